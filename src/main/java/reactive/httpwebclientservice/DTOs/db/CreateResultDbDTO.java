@@ -0,0 +1,31 @@
+package reactive.httpwebclientservice.DTOs.db;
+
+/** One item of a bulk create answer: the created user, or the status/error this item alone failed with. */
+public class CreateResultDbDTO {
+
+    private int status;
+    private UserDbDTO user;
+    private String error;
+
+    public CreateResultDbDTO() {
+    }
+
+    public int getStatus() {
+        return status;
+    }
+    public void setStatus(int status) {
+        this.status = status;
+    }
+    public UserDbDTO getUser() {
+        return user;
+    }
+    public void setUser(UserDbDTO user) {
+        this.user = user;
+    }
+    public String getError() {
+        return error;
+    }
+    public void setError(String error) {
+        this.error = error;
+    }
+}
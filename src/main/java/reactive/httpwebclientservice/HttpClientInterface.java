@@ -5,16 +5,21 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.service.annotation.GetExchange;
 import org.springframework.web.service.annotation.HttpExchange;
 import org.springframework.web.service.annotation.PostExchange;
+import reactive.httpwebclientservice.DTOs.db.CreateResultDbDTO;
 import reactive.httpwebclientservice.DTOs.db.UserDTO;
 import reactive.httpwebclientservice.DTOs.db.UserDbDTO;
 
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Map;
 
 @HttpExchange(url = "/api/v1", accept = MediaType.APPLICATION_JSON_VALUE)
@@ -23,16 +28,36 @@ public interface HttpClientInterface {
     @PostExchange("/create-new-user")
     Mono<ResponseEntity<UserDbDTO>> create(@RequestBody UserDbDTO body);
 
+    // NEW: bulk create, one result per item in request order (CreateUserBatcher; falls back to create when missing)
+    @PostExchange("/users:batchCreate")
+    Mono<List<CreateResultDbDTO>> createAll(@RequestBody List<UserDbDTO> bodies);
+
     @GetExchange("/user/{id}")
     Mono<ResponseEntity<UserDTO>> getById(
             @PathVariable Long id,
             @RequestHeader(name = "X-API-Version", required = false) String apiVersion);
 
+    // NEW: bulk lookup, if the backend has it (UserBatchService falls back to getById when it doesn't)
+    @PostExchange("/users:batchGet")
+    Mono<List<UserDTO>> getByIds(
+            @RequestBody List<Long> ids,
+            @RequestHeader(name = "X-API-Version", required = false) String apiVersion);
+
     @GetExchange("/user-with-data/{id}")
     Mono<ResponseEntity<UserDbDTO>> getWithData(
             @PathVariable Long id,
             @RequestHeader Map<String, String> dynamicHeaders);
 
+    // NEW: same call, body left as the backend's bytes; subscribe with contextWrite(PassThrough::mark)
+    @GetExchange("/user-with-data/{id}")
+    Mono<ResponseEntity<Flux<DataBuffer>>> getWithDataRaw(
+            @PathVariable Long id,
+            @RequestHeader Map<String, String> dynamicHeaders);
+
+    // NEW: one page of all users (0-based), decoded element by element (UserExportService)
+    @GetExchange("/users")
+    Flux<UserDbDTO> listUsers(@RequestParam("page") int page, @RequestParam("size") int size);
+
     @GetExchange("/http-status/{code}")
     Mono<ResponseEntity<String>> proxyGetCustomErrorResponse(@PathVariable int code);
 
@@ -15,6 +15,7 @@ import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
 import io.micrometer.common.KeyValue;
 import io.micrometer.common.KeyValues;
 import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.binder.MeterBinder;
 import io.micrometer.core.instrument.config.MeterFilter;
@@ -29,6 +30,7 @@ import org.springframework.cloud.loadbalancer.config.LoadBalancerZoneConfig;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ClientHttpConnector;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.http.codec.json.Jackson2JsonDecoder;
 import org.springframework.http.codec.json.Jackson2JsonEncoder;
@@ -46,15 +48,13 @@ import reactive.httpwebclientservice.filters.*;
 import reactive.httpwebclientservice.utils.Correlation;
 import reactor.netty.http.HttpProtocol;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.Http2AllocationStrategy;
 import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
 
 import java.time.Duration;
 import java.util.List;
 
-import io.netty.handler.ssl.SslContextBuilder;
-
-import javax.net.ssl.SSLException;
-
 import io.netty.handler.logging.LogLevel;
 import reactor.netty.transport.logging.AdvancedByteBufFormat;
 import org.springframework.beans.factory.annotation.Value;
@@ -67,6 +67,12 @@ public class ApplicationBeanConfiguration {
     private static final org.slf4j.Logger log =
             org.slf4j.LoggerFactory.getLogger(ApplicationBeanConfiguration.class);
 
+    // Pool names are also the "name" tag of the reactor.netty.connection.provider.* metrics
+    public static final String DEFAULT_POOL = "default-http-pool";
+    public static final String UPLOAD_POOL = "upload-http-pool";
+    /** Request attribute naming the connection pool a client uses; becomes the client.pool tag of http.client.requests. */
+    public static final String POOL_ATTRIBUTE = ApplicationBeanConfiguration.class.getName() + ".pool";
+
     private final DserviceClientProperties props;
 
     @Value("${dservice.http.wiretap.format:SIMPLE}")
@@ -88,30 +94,55 @@ public class ApplicationBeanConfiguration {
     /* ── NEW: build a ConnectionProvider (pool) driven by properties ──────── */
     private ConnectionProvider connectionProvider(String name) {
         var p = props.getHttp().getPool();
-        return ConnectionProvider.builder(name)
+        var builder = ConnectionProvider.builder(name)
                 .metrics(true) // <-- NEW: expose reactor.netty.connection.provider.* metrics
                 .maxConnections(p.getMaxConnections())
                 .pendingAcquireTimeout(p.getPendingAcquireTimeout())
                 .maxIdleTime(p.getMaxIdle())
                 .maxLifeTime(p.getMaxLife())
                 .evictInBackground(p.getEvictInBackground())
-                .lifo() // prefer recently-used
-                .build();
+                .disposeTimeout(p.getDrainTimeout()) // NEW: grace period for in-flight requests when swapped out
+                .lifo(); // prefer recently-used
+
+        // NEW: with H2 the pool hands out STREAMS, so size it in connections × streams-per-connection.
+        // Only for forced H2/H2C — otherwise this strategy would also cap the HTTP/1.1 pool.
+        if (isHttp2()) {
+            var h2 = props.getHttp().getH2();
+            builder.allocationStrategy(Http2AllocationStrategy.builder()
+                    .maxConcurrentStreams(h2.getMaxConcurrentStreams())
+                    .maxConnections(h2.getMaxConnections())
+                    .minConnections(h2.getMinConnections())
+                    .build());
+        }
+        return builder.build();
     }
 
-    /* ── NEW: publish the two providers as beans so we can inject them ─────────────── */
-    @Bean("defaultConnectionProvider") // <-- NEW
-    ConnectionProvider defaultConnectionProvider() {
-        return connectionProvider("default-http-pool");
+    private boolean isHttp2() {
+        var proto = props.getHttp().getProtocol();
+        return proto == DserviceClientProperties.Protocol.H2 || proto == DserviceClientProperties.Protocol.H2C;
     }
 
-    @Bean("uploadConnectionProvider") // <-- NEW
-    ConnectionProvider uploadConnectionProvider() {
-        return connectionProvider("upload-http-pool");
+    /* ── NEW: dedicated event-loop groups per connector ─────────────────────
+     * Without these both connectors share Reactor Netty's global loops, so a multi-GB upload
+     * competes with latency-sensitive getById calls for the same threads. */
+    @Bean(value = "defaultLoopResources", destroyMethod = "dispose")
+    LoopResources defaultLoopResources() {
+        return LoopResources.create("default-http-loop", props.getHttp().getEventLoops().getDefaultWorkers(), true);
+    }
+
+    @Bean(value = "uploadLoopResources", destroyMethod = "dispose")
+    LoopResources uploadLoopResources() {
+        return LoopResources.create("upload-http-loop", props.getHttp().getEventLoops().getUploadWorkers(), true);
+    }
+
+    /* ── NEW: one TLS context for both connectors (shared session cache → resumption across connectors) ── */
+    @Bean
+    SharedTlsContext sharedTlsContext(MeterRegistry meterRegistry) {
+        return new SharedTlsContext(props.getHttp().getTls(), meterRegistry);
     }
 
     /* ── NEW: apply protocol + TLS/H2 settings + TCP keepalive + logging ──── */
-    private HttpClient applyHttpVersionAndKeepAlive(HttpClient http, String connectorName) {
+    private HttpClient applyHttpVersionAndKeepAlive(HttpClient http, String connectorName, SharedTlsContext tls) {
         var httpOpts = props.getHttp();
         var proto = httpOpts.getProtocol();
 
@@ -124,17 +155,12 @@ public class ApplicationBeanConfiguration {
                 log.info("[{}] Forcing HTTP/1.1", connectorName);
             }
             case H2 -> {
-                // TLS + ALPN with HTTP/2
+                // TLS + ALPN with HTTP/2 — NEW: one shared context (provider, session cache, ciphers, ALPN)
                 http = http
-                        .secure(ssl -> {
-                            try {
-                                ssl.sslContext(SslContextBuilder.forClient().build());
-                            } catch (SSLException e) {
-                                throw new RuntimeException(e);
-                            }
-                        })
+                        .secure(ssl -> ssl.sslContext(tls.sslContext()))
                         .protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
-                log.info("[{}] Forcing HTTP/2 (TLS/ALPN)", connectorName);
+                http = tls.instrument(http, connectorName);
+                log.info("[{}] Forcing HTTP/2 (TLS/ALPN, provider {})", connectorName, tls.provider());
             }
             case H2C -> {
                 // Cleartext HTTP/2
@@ -148,6 +174,18 @@ public class ApplicationBeanConfiguration {
             }
         }
 
+        // NEW: HTTP/2 settings we advertise + PING-based liveness of idle multiplexed connections
+        if (isHttp2()) {
+            var h2 = httpOpts.getH2();
+            http = http.http2Settings(spec -> {
+                spec.initialWindowSize(h2.getInitialWindowSize());
+                if (h2.getPingAckTimeout() != null) {
+                    spec.pingAckTimeout(h2.getPingAckTimeout())
+                        .pingAckDropThreshold(h2.getPingAckDropThreshold());
+                }
+            });
+        }
+
         // Log what got negotiated at runtime (TLS only)
         http = http.doOnConnected(conn -> {
             var ch = conn.channel();
@@ -165,13 +203,31 @@ public class ApplicationBeanConfiguration {
         return http;
     }
 
-    /** Low-level Reactor Netty client with timeouts. */
-    @Bean("defaultConnector")
-    ReactorClientHttpConnector clientHttpConnector(
-            @Qualifier("defaultConnectionProvider") ConnectionProvider provider
+    /**
+     * Low-level Reactor Netty client with timeouts.
+     * NEW: wrapped in a ReloadableClientHttpConnector, so pool/protocol changes can be applied
+     * at runtime (POST /actuator/refresh) without a restart — see ClientConfigRefresher.
+     */
+    @Bean(value = "defaultConnector", destroyMethod = "dispose")
+    ReloadableClientHttpConnector clientHttpConnector(
+            @Qualifier("defaultLoopResources") LoopResources loops,
+            SharedTlsContext tls,
+            MeterRegistry meterRegistry
     )
+    {
+        return new ReloadableClientHttpConnector("defaultConnector",
+                () -> connectionProvider(DEFAULT_POOL),
+                provider -> defaultHttpConnector(provider, loops, tls, meterRegistry));
+    }
+
+    private ReactorClientHttpConnector defaultHttpConnector(ConnectionProvider provider,
+                                                           LoopResources loops,
+                                                           SharedTlsContext tls,
+                                                           MeterRegistry meterRegistry)
     {
         HttpClient http = HttpClient.create(provider)
+                // NEW: own event loops + NIO/epoll/io_uring transport
+                .runOn(loops, NativeTransportSelector.preferNative(props.getHttp().getTransport(), "defaultConnector"))
                 // CONNECT timeout (TCP handshake)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5_000)
 
@@ -187,7 +243,10 @@ public class ApplicationBeanConfiguration {
                 .metrics(true, uri -> uri); // <— use this public overload;
 
         /* NEW: apply protocol, TLS/H2 and TCP keepalive */
-        http = applyHttpVersionAndKeepAlive(http, "defaultConnector");
+        http = applyHttpVersionAndKeepAlive(http, "defaultConnector", tls);
+        if (isHttp2()) {
+            http = Http2StreamMetrics.instrument(http, "defaultConnector", meterRegistry);
+        }
 
 
         // NEW: per-client wiretap
@@ -202,11 +261,23 @@ public class ApplicationBeanConfiguration {
     }
 
     // NEW: a more tolerant connector specifically for VERY large uploads.
-    @Bean("uploadConnector")
-    ReactorClientHttpConnector uploadClientHttpConnector(
-            @Qualifier("uploadConnectionProvider") ConnectionProvider provider
+    @Bean(value = "uploadConnector", destroyMethod = "dispose")
+    ReloadableClientHttpConnector uploadClientHttpConnector(
+            @Qualifier("uploadLoopResources") LoopResources loops,
+            SharedTlsContext tls,
+            MeterRegistry meterRegistry
     ) {
+        return new ReloadableClientHttpConnector("uploadConnector",
+                () -> connectionProvider(UPLOAD_POOL),
+                provider -> uploadHttpConnector(provider, loops, tls, meterRegistry));
+    }
+
+    private ReactorClientHttpConnector uploadHttpConnector(ConnectionProvider provider,
+                                                          LoopResources loops,
+                                                          SharedTlsContext tls,
+                                                          MeterRegistry meterRegistry) {
         HttpClient http = HttpClient.create(provider)
+                .runOn(loops, NativeTransportSelector.preferNative(props.getHttp().getTransport(), "uploadConnector"))
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10_000)
                 .responseTimeout(Duration.ofHours(24))
                 .doOnConnected(conn -> conn
@@ -215,7 +286,10 @@ public class ApplicationBeanConfiguration {
                 .metrics(true, uri -> uri);
 
         /* NEW: apply protocol, TLS/H2 and TCP keepalive */
-        http = applyHttpVersionAndKeepAlive(http, "uploadConnector");
+        http = applyHttpVersionAndKeepAlive(http, "uploadConnector", tls);
+        if (isHttp2()) {
+            http = Http2StreamMetrics.instrument(http, "uploadConnector", meterRegistry);
+        }
 
         // NEW: per-client wiretap
         if (wiretapUploadEnabled) {
@@ -261,6 +335,23 @@ public class ApplicationBeanConfiguration {
         };
     }
 
+    /** NEW: percentiles for HTTP/2 stream-acquire latency (time a request waits for a free stream). */
+    @Bean
+    MeterFilter http2StreamAcquirePercentiles() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (Http2StreamMetrics.STREAM_ACQUIRE_TIME.equals(id.getName())) {
+                    return DistributionStatisticConfig.builder()
+                            .percentiles(0.5, 0.95, 0.99)
+                            .build()
+                            .merge(config);
+                }
+                return config;
+            }
+        };
+    }
+
     /** A custom observation convention to add low-cardinality tags (e.g., serviceId, apiVersion). */
     @Bean
     ClientRequestObservationConvention webClientObservationConvention()
@@ -283,11 +374,15 @@ public class ApplicationBeanConfiguration {
                         ? context.getRequest().headers().getFirst("X-API-Version") : null;
                 String corr = context.getRequest() != null
                         ? context.getRequest().headers().getFirst(Correlation.HEADER) : null;
+                // NEW: which pool served it, so per-pool latency (PoolSizingAdvisor) isn't mixed with the other's
+                Object pool = context.getRequest() != null
+                        ? context.getRequest().attribute(POOL_ATTRIBUTE).orElse(null) : null;
 
                 return defaults.and(
                         KeyValue.of("service.id", serviceId == null ? "unknown" : serviceId),
                         KeyValue.of("api.version", apiVersion == null ? "none" : apiVersion),
-                        KeyValue.of("corr.present", corr == null ? "no" : "yes")
+                        KeyValue.of("corr.present", corr == null ? "no" : "yes"),
+                        KeyValue.of("client.pool", pool == null ? DEFAULT_POOL : pool.toString())
                 );
             }
         };
@@ -337,11 +432,15 @@ public class ApplicationBeanConfiguration {
 
     @Bean
     BulkheadRegistry bulkheadRegistry() {
-        BulkheadConfig bhConfig = BulkheadConfig.custom()
-                .maxConcurrentCalls(50)              // cap concurrent in-flight calls
-                .maxWaitDuration(Duration.ofMillis(0)) // fail-fast when saturated
+        return BulkheadRegistry.of(bulkheadConfig(props.getResilience().getBulkhead()));
+    }
+
+    // NEW: limits come from dservice.resilience.bulkhead.* (ClientConfigRefresher re-applies them on refresh)
+    static BulkheadConfig bulkheadConfig(DserviceClientProperties.BulkheadOptions bh) {
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(bh.getMaxConcurrentCalls()) // cap concurrent in-flight calls (default 50)
+                .maxWaitDuration(bh.getMaxWait())               // 0 = fail-fast when saturated
                 .build();
-        return BulkheadRegistry.of(bhConfig);
     }
 
 
@@ -351,6 +450,12 @@ public class ApplicationBeanConfiguration {
     }
 
 
+    // NEW: remembered 404s; a bean so UserLookupService can forget an id once it is created
+    @Bean
+    public NegativeCacheFilter negativeCacheFilter(MeterRegistry meterRegistry) {
+        return new NegativeCacheFilter(props, meterRegistry);
+    }
+
     // NEW (Task 18): a singleton, in-memory cookie jar
     @Bean
     public InMemoryCookieJar inMemoryCookieJar() {
@@ -369,14 +474,16 @@ public class ApplicationBeanConfiguration {
     /** Load-balanced builder with: per-client Jackson + observation + your filters. */
     @Bean
     @LoadBalanced
-    public WebClient.Builder loadBalancedWebClientBuilder(@Qualifier("defaultConnector") ReactorClientHttpConnector connector,
+    public WebClient.Builder loadBalancedWebClientBuilder(@Qualifier("defaultConnector") ClientHttpConnector connector,
                                                           Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder,
                                                           ObservationRegistry observationRegistry,
                                                           ClientRequestObservationConvention webClientObservationConvention,
                                                           CircuitBreakerRegistry circuitBreakerRegistry,
                                                           BulkheadRegistry bulkheadRegistry,
                                                           InMemoryCookieJar cookieJar,
-                                                          RateLimiterRegistry rateLimiterRegistry)
+                                                          RateLimiterRegistry rateLimiterRegistry,
+                                                          MeterRegistry meterRegistry,
+                                                          NegativeCacheFilter negativeCacheFilter)
     {
 
         // Per-client, Spring-aware mappers:
@@ -423,6 +530,8 @@ public class ApplicationBeanConfiguration {
         // Attach the retry filter here so every client built from this builder gets it.
         var retryFilter = new RetryBackoffFilter(2, Duration.ofSeconds(1), Duration.ofSeconds(1), 0.0);
         var errorMapping = new ErrorMappingFilter();
+        // NEW: single-flight for identical in-flight GET/HEADs (dservice.coalescing.*)
+        var coalescingFilter = new RequestCoalescingFilter(props, meterRegistry);
         var correlationFilter = new CorrelationHeaderFilter();
         var authFilter = new AuthHeaderFilter(props::getAuthToken);
 
@@ -518,9 +627,17 @@ public class ApplicationBeanConfiguration {
                     // So we insert r4jFilter at index 0 (OUTERMOST).
                     list.add(0, r4jFilter);          // <-- NEW (outermost)
 
+                    // NEW: known-missing ids are answered before the limiter and bulkhead, so they cost no permit;
+                    // the replayed 404 goes through its own error mapping (NotFoundException as usual)
+                    list.add(0, negativeCacheFilter);
+
                     // OUTERMOST (was) -> now second outermost(now the r4jFilter is OUTERMOST)
                     list.add(errorMapping);
 
+                    // NEW: coalescing right inside error mapping: limiter/bulkhead/error mapping stay per caller
+                    // (own correlation id in exceptions), everything below runs once per shared exchange
+                    list.add(coalescingFilter);
+
                     // request-mutating filters should run BEFORE retry (so each retry has headers)
                     // mutate requests, then allow retry to re-run with headers
                     list.add(correlationFilter);
@@ -557,7 +674,7 @@ public class ApplicationBeanConfiguration {
     @Qualifier("uploadWebClient")
     public WebClient uploadWebClient(
             WebClient.Builder lbBuilder, // <-- this is the @LoadBalanced builder
-            @Qualifier("uploadConnector") ReactorClientHttpConnector uploadConnector,
+            @Qualifier("uploadConnector") ClientHttpConnector uploadConnector,
             ObservationRegistry observationRegistry,
             ClientRequestObservationConvention webClientObservationConvention,
             DserviceClientProperties props) {
@@ -567,6 +684,9 @@ public class ApplicationBeanConfiguration {
                 .clientConnector(uploadConnector)
                 .baseUrl("http://" + props.getServiceId()) // or "lb://" + props.getServiceId()
                 // DO NOT add the LB filter again here
+                // NEW: transfers are streamed (and Range GETs differ only by header): never buffer/share them
+                .filters(list -> list.removeIf(f -> f instanceof RequestCoalescingFilter || f instanceof NegativeCacheFilter))
+                .defaultRequest(r -> r.attribute(POOL_ATTRIBUTE, UPLOAD_POOL))   // client.pool tag
                 .observationRegistry(observationRegistry)
                 .observationConvention(webClientObservationConvention)
                 .build();
@@ -581,17 +701,18 @@ public class ApplicationBeanConfiguration {
 
 
     // ───────────────────────────────────────────────────────────────
-    // NEW: Central RateLimiter registry (code-based config, no YAML).
-    //   Example policy: ≤10 QPS with burst 20, and wait up to 100 ms
+    // NEW: Central RateLimiter registry.
+    //   Default policy: ≤10 QPS, and wait up to 100 ms
     //   to acquire a permit (otherwise fail fast).
-    //   Tune these numbers as you need, or externalize to properties.
+    //   NEW: externalized to dservice.resilience.rate-limiter.* so it can be tuned live.
     // ───────────────────────────────────────────────────────────────
     @Bean
     RateLimiterRegistry rateLimiterRegistry() {
+        var rl = props.getResilience().getRateLimiter();
         RateLimiterConfig cfg = RateLimiterConfig.custom()
-                .limitRefreshPeriod(java.time.Duration.ofSeconds(1))  // "per second"
-                .limitForPeriod(10)                                   // 10 permits added each second
-                .timeoutDuration(java.time.Duration.ofMillis(100))    // wait up to 100ms for a token
+                .limitRefreshPeriod(rl.getLimitRefreshPeriod())  // "per second"
+                .limitForPeriod(rl.getLimitForPeriod())          // 10 permits added each second
+                .timeoutDuration(rl.getTimeout())                // wait up to 100ms for a token
                 .build();
         return RateLimiterRegistry.of(cfg);
     }
@@ -0,0 +1,101 @@
+package reactive.httpwebclientservice.config;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Applies changed client settings live, after POST /actuator/refresh.
+ *
+ * Spring Cloud re-binds DserviceClientProperties on refresh; when that is done (RefreshScopeRefreshedEvent)
+ * we compare fingerprints of what we applied last time and:
+ *  - dservice.http.pool.* / protocol / h2 / tcp-keep-alive → swap the ConnectionProvider + HttpClient of both
+ *    connectors, old pools drain gracefully (warm connections of the new pool build up as traffic flows)
+ *  - dservice.resilience.* → reconfigure the existing RateLimiters and Bulkheads in place
+ * Transport, event loops and TLS settings still need a restart.
+ */
+@Component
+public class ClientConfigRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientConfigRefresher.class);
+
+    private final DserviceClientProperties props;
+    private final ReloadableClientHttpConnector defaultConnector;
+    private final ReloadableClientHttpConnector uploadConnector;
+    private final RateLimiterRegistry rateLimiterRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+
+    private String appliedConnectorSettings;
+    private String appliedResilienceSettings;
+
+    public ClientConfigRefresher(DserviceClientProperties props,
+                                 @Qualifier("defaultConnector") ReloadableClientHttpConnector defaultConnector,
+                                 @Qualifier("uploadConnector") ReloadableClientHttpConnector uploadConnector,
+                                 RateLimiterRegistry rateLimiterRegistry,
+                                 BulkheadRegistry bulkheadRegistry) {
+        this.props = props;
+        this.defaultConnector = defaultConnector;
+        this.uploadConnector = uploadConnector;
+        this.rateLimiterRegistry = rateLimiterRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.appliedConnectorSettings = connectorSettings();
+        this.appliedResilienceSettings = resilienceSettings();
+    }
+
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public synchronized void onRefresh() {
+        String connectors = connectorSettings();
+        if (!connectors.equals(appliedConnectorSettings)) {
+            log.info("HTTP client settings changed {} → {}", appliedConnectorSettings, connectors);
+            defaultConnector.reload();
+            uploadConnector.reload();
+            appliedConnectorSettings = connectors;
+        }
+
+        String resilience = resilienceSettings();
+        if (!resilience.equals(appliedResilienceSettings)) {
+            log.info("Resilience settings changed {} → {}", appliedResilienceSettings, resilience);
+            applyResilience();
+            appliedResilienceSettings = resilience;
+        }
+    }
+
+    private void applyResilience() {
+        var rl = props.getResilience().getRateLimiter();
+        rateLimiterRegistry.getAllRateLimiters().forEach(limiter -> {
+            limiter.changeLimitForPeriod(rl.getLimitForPeriod());
+            limiter.changeTimeoutDuration(rl.getTimeout());
+            if (!limiter.getRateLimiterConfig().getLimitRefreshPeriod().equals(rl.getLimitRefreshPeriod())) {
+                log.warn("RateLimiter '{}': limit-refresh-period can only change on restart", limiter.getName());
+            }
+        });
+
+        var bulkheadConfig = ApplicationBeanConfiguration.bulkheadConfig(props.getResilience().getBulkhead());
+        bulkheadRegistry.getAllBulkheads().forEach(bh -> bh.changeConfig(bulkheadConfig));
+    }
+
+    private String connectorSettings() {
+        var http = props.getHttp();
+        var pool = http.getPool();
+        var h2 = http.getH2();
+        return Arrays.asList(http.getProtocol(), http.isTcpKeepAlive(),
+                pool.getMaxConnections(), pool.getPendingAcquireTimeout(), pool.getMaxIdle(), pool.getMaxLife(),
+                pool.getEvictInBackground(), pool.getDrainTimeout(),
+                h2.getMaxConcurrentStreams(), h2.getMaxConnections(), h2.getMinConnections(),
+                h2.getInitialWindowSize(), h2.getPingAckTimeout(), h2.getPingAckDropThreshold()).toString();
+    }
+
+    private String resilienceSettings() {
+        var rl = props.getResilience().getRateLimiter();
+        var bh = props.getResilience().getBulkhead();
+        return Arrays.asList(rl.getLimitForPeriod(), rl.getLimitRefreshPeriod(), rl.getTimeout(),
+                bh.getMaxConcurrentCalls(), bh.getMaxWait()).toString();
+    }
+}
@@ -2,8 +2,12 @@ package reactive.httpwebclientservice.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 @ConfigurationProperties(prefix = "dservice")
@@ -23,6 +27,33 @@ public class DserviceClientProperties
     /* ── NEW: per-client HTTP options (protocol + pool/keepalive) ─────────── */
     private HttpOptions http = new HttpOptions();
 
+    /* ── NEW: Resilience4j limits (re-applied at runtime on /actuator/refresh) ── */
+    private Resilience resilience = new Resilience();
+
+    /* ── NEW: upload engine settings (LargeFileUploadService & friends) ── */
+    private Upload upload = new Upload();
+
+    /* ── NEW: segmented download settings (LargeFileDownloadService) ── */
+    private Download download = new Download();
+
+    /* ── NEW: single-flight for concurrent identical GETs (RequestCoalescingFilter) ── */
+    private Coalescing coalescing = new Coalescing();
+
+    /* ── NEW: response caches in front of the user lookups (UserLookupService) ── */
+    private CacheOptions cache = new CacheOptions();
+
+    /* ── NEW: batch endpoints on /proxy (UserBatchService) ── */
+    private Batch batch = new Batch();
+
+    /* ── NEW: scatter-gather endpoints on /proxy (UserAggregateService) ── */
+    private Composite composite = new Composite();
+
+    /* ── NEW: streaming export on /proxy (UserExportService) ── */
+    private Export export = new Export();
+
+    /* ── NEW: /proxy/debug/bench + /proxy/debug/stub (BenchmarkController, DownloadStubController), off by default ── */
+    private Bench bench = new Bench();
+
 
     // (Optional) If you later want more settings, you can add them here:
     // private int timeoutMs;
@@ -65,11 +96,42 @@ public class DserviceClientProperties
     public HttpOptions getHttp() { return http; }
     public void setHttp(HttpOptions http) { this.http = http; }
 
+    public Resilience getResilience() { return resilience; }
+    public void setResilience(Resilience resilience) { this.resilience = resilience; }
+
+    public Upload getUpload() { return upload; }
+    public void setUpload(Upload upload) { this.upload = upload; }
+
+    public Download getDownload() { return download; }
+    public void setDownload(Download download) { this.download = download; }
+
+    public Coalescing getCoalescing() { return coalescing; }
+    public void setCoalescing(Coalescing coalescing) { this.coalescing = coalescing; }
+
+    public CacheOptions getCache() { return cache; }
+    public void setCache(CacheOptions cache) { this.cache = cache; }
+
+    public Batch getBatch() { return batch; }
+    public void setBatch(Batch batch) { this.batch = batch; }
+
+    public Composite getComposite() { return composite; }
+    public void setComposite(Composite composite) { this.composite = composite; }
+
+    public Export getExport() { return export; }
+    public void setExport(Export export) { this.export = export; }
+
+    public Bench getBench() { return bench; }
+    public void setBench(Bench bench) { this.bench = bench; }
+
     /* NEW */
     public static class HttpOptions {
         private Protocol protocol = Protocol.AUTO;      // AUTO | H2 | H2C | H1
         private boolean tcpKeepAlive = true;            // TCP-level keepalive
         private Pool pool = new Pool();
+        private Transport transport = Transport.AUTO;   // AUTO | NIO | EPOLL | IO_URING
+        private EventLoops eventLoops = new EventLoops();
+        private H2 h2 = new H2();                       // only used when protocol is H2 / H2C
+        private Tls tls = new Tls();                    // shared TLS context (protocol H2)
 
         public Protocol getProtocol() { return protocol; }
         public void setProtocol(Protocol protocol) { this.protocol = protocol; }
@@ -79,11 +141,96 @@ public class DserviceClientProperties
 
         public Pool getPool() { return pool; }
         public void setPool(Pool pool) { this.pool = pool; }
+
+        public Transport getTransport() { return transport; }
+        public void setTransport(Transport transport) { this.transport = transport; }
+
+        public EventLoops getEventLoops() { return eventLoops; }
+        public void setEventLoops(EventLoops eventLoops) { this.eventLoops = eventLoops; }
+
+        public H2 getH2() { return h2; }
+        public void setH2(H2 h2) { this.h2 = h2; }
+
+        public Tls getTls() { return tls; }
+        public void setTls(Tls tls) { this.tls = tls; }
     }
 
     /* NEW */
     public enum Protocol { AUTO, H2, H2C, H1 }
 
+    /* NEW: socket transport; native ones fall back to NIO when the native library is not available */
+    public enum Transport { AUTO, NIO, EPOLL, IO_URING }
+
+    /* NEW: dedicated event-loop groups, so big uploads never share loops with latency-sensitive calls */
+    public static class EventLoops {
+        private int defaultWorkers = Math.max(Runtime.getRuntime().availableProcessors(), 4);
+        private int uploadWorkers = 2;
+
+        public int getDefaultWorkers() { return defaultWorkers; }
+        public void setDefaultWorkers(int defaultWorkers) { this.defaultWorkers = defaultWorkers; }
+
+        public int getUploadWorkers() { return uploadWorkers; }
+        public void setUploadWorkers(int uploadWorkers) { this.uploadWorkers = uploadWorkers; }
+    }
+
+    /* NEW: HTTP/2 multiplexing (Http2SettingsSpec + Http2AllocationStrategy) */
+    public static class H2 {
+        private long maxConcurrentStreams = 100;          // streams we put on one connection before opening another
+        private int maxConnections = 10;                  // H2 connections per remote host
+        private int minConnections = 1;                   // kept open even when idle
+        private int initialWindowSize = 1024 * 1024;      // SETTINGS_INITIAL_WINDOW_SIZE, bytes (RFC default is 65535)
+        private Duration pingAckTimeout = Duration.ofSeconds(10); // PING-based liveness; null disables it
+        private int pingAckDropThreshold = 2;             // unanswered PINGs before the connection is closed
+
+        public long getMaxConcurrentStreams() { return maxConcurrentStreams; }
+        public void setMaxConcurrentStreams(long maxConcurrentStreams) { this.maxConcurrentStreams = maxConcurrentStreams; }
+
+        public int getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+
+        public int getMinConnections() { return minConnections; }
+        public void setMinConnections(int minConnections) { this.minConnections = minConnections; }
+
+        public int getInitialWindowSize() { return initialWindowSize; }
+        public void setInitialWindowSize(int initialWindowSize) { this.initialWindowSize = initialWindowSize; }
+
+        public Duration getPingAckTimeout() { return pingAckTimeout; }
+        public void setPingAckTimeout(Duration pingAckTimeout) { this.pingAckTimeout = pingAckTimeout; }
+
+        public int getPingAckDropThreshold() { return pingAckDropThreshold; }
+        public void setPingAckDropThreshold(int pingAckDropThreshold) { this.pingAckDropThreshold = pingAckDropThreshold; }
+    }
+
+    /* NEW: one TLS context shared by all connectors, so the session cache is shared too */
+    public enum TlsProvider { AUTO, OPENSSL, JDK }
+
+    public static class Tls {
+        private TlsProvider provider = TlsProvider.AUTO;        // AUTO = OpenSSL/BoringSSL when available, else JDK
+        private long sessionCacheSize = 1024;                   // cached sessions for resumption
+        private Duration sessionTimeout = Duration.ofHours(1);  // how long a cached session may be resumed
+        private List<String> ciphers = new ArrayList<>();       // empty = HTTP/2-safe defaults
+        private List<String> protocols = new ArrayList<>();     // e.g. TLSv1.3, TLSv1.2; empty = provider defaults
+        private List<String> alpn = new ArrayList<>(List.of("h2", "http/1.1"));
+
+        public TlsProvider getProvider() { return provider; }
+        public void setProvider(TlsProvider provider) { this.provider = provider; }
+
+        public long getSessionCacheSize() { return sessionCacheSize; }
+        public void setSessionCacheSize(long sessionCacheSize) { this.sessionCacheSize = sessionCacheSize; }
+
+        public Duration getSessionTimeout() { return sessionTimeout; }
+        public void setSessionTimeout(Duration sessionTimeout) { this.sessionTimeout = sessionTimeout; }
+
+        public List<String> getCiphers() { return ciphers; }
+        public void setCiphers(List<String> ciphers) { this.ciphers = ciphers; }
+
+        public List<String> getProtocols() { return protocols; }
+        public void setProtocols(List<String> protocols) { this.protocols = protocols; }
+
+        public List<String> getAlpn() { return alpn; }
+        public void setAlpn(List<String> alpn) { this.alpn = alpn; }
+    }
+
     /* NEW */
     public static class Pool {
         private int maxConnections = 200;
@@ -91,6 +238,8 @@ public class DserviceClientProperties
         private Duration maxIdle = Duration.ofSeconds(30);
         private Duration maxLife = Duration.ofMinutes(5);
         private Duration evictInBackground = Duration.ofSeconds(60);
+        private Duration drainTimeout = Duration.ofSeconds(30); // grace period for an old pool after a hot reload
+        private AutoTune autoTune = new AutoTune();  // optional sizing controller (off by default)
 
         public int getMaxConnections() { return maxConnections; }
         public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
@@ -106,6 +255,523 @@ public class DserviceClientProperties
 
         public Duration getEvictInBackground() { return evictInBackground; }
         public void setEvictInBackground(Duration evictInBackground) { this.evictInBackground = evictInBackground; }
+
+        public Duration getDrainTimeout() { return drainTimeout; }
+        public void setDrainTimeout(Duration drainTimeout) { this.drainTimeout = drainTimeout; }
+
+        public AutoTune getAutoTune() { return autoTune; }
+        public void setAutoTune(AutoTune autoTune) { this.autoTune = autoTune; }
     }
-}
 
+    /* NEW: pool sizing from live metrics (Little's law), see PoolSizingAdvisor */
+    public static class AutoTune {
+        private boolean enabled = false;
+        private Duration interval = Duration.ofSeconds(30);   // evaluation window
+        private double headroom = 1.5;                         // multiplier over the estimated need
+        private int minConnections = 10;
+        private int maxConnections = 1000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public Duration getInterval() { return interval; }
+        public void setInterval(Duration interval) { this.interval = interval; }
+
+        public double getHeadroom() { return headroom; }
+        public void setHeadroom(double headroom) { this.headroom = headroom; }
+
+        public int getMinConnections() { return minConnections; }
+        public void setMinConnections(int minConnections) { this.minConnections = minConnections; }
+
+        public int getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+    }
+
+    /* NEW: Resilience4j settings that used to be hard-coded in ApplicationBeanConfiguration */
+    public static class Resilience {
+        private RateLimiterOptions rateLimiter = new RateLimiterOptions();
+        private BulkheadOptions bulkhead = new BulkheadOptions();
+
+        public RateLimiterOptions getRateLimiter() { return rateLimiter; }
+        public void setRateLimiter(RateLimiterOptions rateLimiter) { this.rateLimiter = rateLimiter; }
+
+        public BulkheadOptions getBulkhead() { return bulkhead; }
+        public void setBulkhead(BulkheadOptions bulkhead) { this.bulkhead = bulkhead; }
+    }
+
+    public static class RateLimiterOptions {
+        private int limitForPeriod = 10;                                   // permits per refresh period
+        private Duration limitRefreshPeriod = Duration.ofSeconds(1);       // NB: cannot change without a restart
+        private Duration timeout = Duration.ofMillis(100);                 // wait for a permit, then fail fast
+
+        public int getLimitForPeriod() { return limitForPeriod; }
+        public void setLimitForPeriod(int limitForPeriod) { this.limitForPeriod = limitForPeriod; }
+
+        public Duration getLimitRefreshPeriod() { return limitRefreshPeriod; }
+        public void setLimitRefreshPeriod(Duration limitRefreshPeriod) { this.limitRefreshPeriod = limitRefreshPeriod; }
+
+        public Duration getTimeout() { return timeout; }
+        public void setTimeout(Duration timeout) { this.timeout = timeout; }
+    }
+
+    public static class BulkheadOptions {
+        private int maxConcurrentCalls = 50;
+        private Duration maxWait = Duration.ZERO;   // fail fast when saturated
+
+        public int getMaxConcurrentCalls() { return maxConcurrentCalls; }
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) { this.maxConcurrentCalls = maxConcurrentCalls; }
+
+        public Duration getMaxWait() { return maxWait; }
+        public void setMaxWait(Duration maxWait) { this.maxWait = maxWait; }
+    }
+
+    /* NEW: upload settings */
+    public static class Upload {
+        private ParallelUpload parallel = new ParallelUpload();
+        private Checksum checksum = new Checksum();
+        private Dedup dedup = new Dedup();
+        private Compression compression = new Compression();
+        private Bandwidth bandwidth = new Bandwidth();
+        private Auto auto = new Auto();
+        private Source source = new Source();
+        private Duration passThroughTimeout = Duration.ofHours(1);   // servlet async timeout of /proxy/upload-pass-through only
+
+        public ParallelUpload getParallel() { return parallel; }
+        public void setParallel(ParallelUpload parallel) { this.parallel = parallel; }
+
+        public Dedup getDedup() { return dedup; }
+        public void setDedup(Dedup dedup) { this.dedup = dedup; }
+
+        public Compression getCompression() { return compression; }
+        public void setCompression(Compression compression) { this.compression = compression; }
+
+        public Bandwidth getBandwidth() { return bandwidth; }
+        public void setBandwidth(Bandwidth bandwidth) { this.bandwidth = bandwidth; }
+
+        public Auto getAuto() { return auto; }
+        public void setAuto(Auto auto) { this.auto = auto; }
+
+        public Source getSource() { return source; }
+        public void setSource(Source source) { this.source = source; }
+
+        public Checksum getChecksum() { return checksum; }
+        public void setChecksum(Checksum checksum) { this.checksum = checksum; }
+
+        public Duration getPassThroughTimeout() { return passThroughTimeout; }
+        public void setPassThroughTimeout(Duration passThroughTimeout) { this.passThroughTimeout = passThroughTimeout; }
+    }
+
+    /* NEW: content-defined chunking for deduplicated uploads (DedupUploadService) */
+    public static class Dedup {
+        private DataSize minChunk = DataSize.ofKilobytes(256);
+        private DataSize avgChunk = DataSize.ofMegabytes(1);   // rounded down to a power of two
+        private DataSize maxChunk = DataSize.ofMegabytes(4);
+        private int concurrency = 4;                           // missing chunks in flight per upload
+        private int hashCacheEntries = 1000;                   // files whose chunk hashes are remembered (path+mtime+size)
+
+        public DataSize getMinChunk() { return minChunk; }
+        public void setMinChunk(DataSize minChunk) { this.minChunk = minChunk; }
+
+        public DataSize getAvgChunk() { return avgChunk; }
+        public void setAvgChunk(DataSize avgChunk) { this.avgChunk = avgChunk; }
+
+        public DataSize getMaxChunk() { return maxChunk; }
+        public void setMaxChunk(DataSize maxChunk) { this.maxChunk = maxChunk; }
+
+        public int getConcurrency() { return concurrency; }
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        public int getHashCacheEntries() { return hashCacheEntries; }
+        public void setHashCacheEntries(int hashCacheEntries) { this.hashCacheEntries = hashCacheEntries; }
+    }
+
+    /* NEW: how upload bodies are read from disk (FileChunkReader) */
+    public enum ChunkSourceMode { CHANNEL, MAPPED }
+
+    public static class Source {
+        private ChunkSourceMode mode = ChunkSourceMode.CHANNEL;     // positional FileChannel reads | mmap slices
+        private DataSize minChunk = DataSize.ofKilobytes(16);
+        private DataSize initialChunk = DataSize.ofKilobytes(64);
+        private DataSize maxChunk = DataSize.ofMegabytes(1);
+        private Duration targetChunkTime = Duration.ofMillis(2);     // chunk ≈ observed throughput × this
+        private Duration stallTime = Duration.ofMillis(50);          // no demand for this long → halve the chunk
+        private DataSize mappedWindow = DataSize.ofMegabytes(256);   // MAPPED: size of each mapping
+
+        public ChunkSourceMode getMode() { return mode; }
+        public void setMode(ChunkSourceMode mode) { this.mode = mode; }
+
+        public DataSize getMinChunk() { return minChunk; }
+        public void setMinChunk(DataSize minChunk) { this.minChunk = minChunk; }
+
+        public DataSize getInitialChunk() { return initialChunk; }
+        public void setInitialChunk(DataSize initialChunk) { this.initialChunk = initialChunk; }
+
+        public DataSize getMaxChunk() { return maxChunk; }
+        public void setMaxChunk(DataSize maxChunk) { this.maxChunk = maxChunk; }
+
+        public Duration getTargetChunkTime() { return targetChunkTime; }
+        public void setTargetChunkTime(Duration targetChunkTime) { this.targetChunkTime = targetChunkTime; }
+
+        public Duration getStallTime() { return stallTime; }
+        public void setStallTime(Duration stallTime) { this.stallTime = stallTime; }
+
+        public DataSize getMappedWindow() { return mappedWindow; }
+        public void setMappedWindow(DataSize mappedWindow) { this.mappedWindow = mappedWindow; }
+    }
+
+    /* NEW: thresholds of POST /proxy/upload-auto (UploadStrategySelector) */
+    public static class Auto {
+        private DataSize smallMax = DataSize.ofMegabytes(1);         // ≤ → SMALL (default connector, capped at 8MB)
+        private DataSize multipartMax = DataSize.ofMegabytes(8);     // ≤ → MULTIPART (default connector, capped at 8MB)
+        private DataSize parallelMin = DataSize.ofGigabytes(8);      // ≥ → PARALLEL; in between STREAM / ZERO_COPY
+        private int pendingAcquiresPressure = 10;                    // default pool pending ≥ → keep uploads off it
+
+        public DataSize getSmallMax() { return smallMax; }
+        public void setSmallMax(DataSize smallMax) { this.smallMax = smallMax; }
+
+        public DataSize getMultipartMax() { return multipartMax; }
+        public void setMultipartMax(DataSize multipartMax) { this.multipartMax = multipartMax; }
+
+        public DataSize getParallelMin() { return parallelMin; }
+        public void setParallelMin(DataSize parallelMin) { this.parallelMin = parallelMin; }
+
+        public int getPendingAcquiresPressure() { return pendingAcquiresPressure; }
+        public void setPendingAcquiresPressure(int pendingAcquiresPressure) { this.pendingAcquiresPressure = pendingAcquiresPressure; }
+    }
+
+    /* NEW: shared upload bandwidth, split between running uploads by weight (BandwidthScheduler); live on refresh */
+    public static class Bandwidth {
+        private DataSize limitPerSecond = DataSize.ofBytes(0);   // global cap for all uploads; 0 = unlimited
+        private Duration tick = Duration.ofMillis(10);           // credit is handed out every tick (restart to change)
+        private int defaultWeight = 1;
+        private boolean perUploadMetrics = false;                // throughput gauge per upload id (one series each)
+
+        public DataSize getLimitPerSecond() { return limitPerSecond; }
+        public void setLimitPerSecond(DataSize limitPerSecond) { this.limitPerSecond = limitPerSecond; }
+
+        public Duration getTick() { return tick; }
+        public void setTick(Duration tick) { this.tick = tick; }
+
+        public int getDefaultWeight() { return defaultWeight; }
+        public void setDefaultWeight(int defaultWeight) { this.defaultWeight = defaultWeight; }
+
+        public boolean isPerUploadMetrics() { return perUploadMetrics; }
+        public void setPerUploadMetrics(boolean perUploadMetrics) { this.perUploadMetrics = perUploadMetrics; }
+    }
+
+    /* NEW: on-the-fly compression of streamed uploads (StreamingCompression) */
+    public enum CompressionCodec { NONE, GZIP, ZSTD }
+
+    public static class Compression {
+        private CompressionCodec codec = CompressionCodec.NONE;
+        private int level = -1;           // -1 = codec default (gzip 6, zstd 3)
+
+        public CompressionCodec getCodec() { return codec; }
+        public void setCodec(CompressionCodec codec) { this.codec = codec; }
+
+        public int getLevel() { return level; }
+        public void setLevel(int level) { this.level = level; }
+    }
+
+    /* NEW: checksums computed while the upload body streams out (CRC32C is always on, it is hardware-accelerated) */
+    public static class Checksum {
+        private boolean sha256 = false;   // costs CPU on every byte; enable for end-to-end cryptographic verification
+
+        public boolean isSha256() { return sha256; }
+        public void setSha256(boolean sha256) { this.sha256 = sha256; }
+    }
+
+    /* NEW: ranged multi-part uploads with resumable checkpoints (ParallelUploadService) */
+    public static class ParallelUpload {
+        private DataSize partSize = DataSize.ofMegabytes(64);
+        private int concurrency = 4;                           // parts in flight per upload
+        private int partRetries = 3;                           // per part, on top of RetryBackoffFilter
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        private Path checkpointDir = Path.of(System.getProperty("java.io.tmpdir"), "dservice-upload-checkpoints");
+
+        public DataSize getPartSize() { return partSize; }
+        public void setPartSize(DataSize partSize) { this.partSize = partSize; }
+
+        public int getConcurrency() { return concurrency; }
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        public int getPartRetries() { return partRetries; }
+        public void setPartRetries(int partRetries) { this.partRetries = partRetries; }
+
+        public Duration getRetryBackoff() { return retryBackoff; }
+        public void setRetryBackoff(Duration retryBackoff) { this.retryBackoff = retryBackoff; }
+
+        public Path getCheckpointDir() { return checkpointDir; }
+        public void setCheckpointDir(Path checkpointDir) { this.checkpointDir = checkpointDir; }
+    }
+
+    /* NEW: large downloads — parallel Range segments written positionally, resumable (LargeFileDownloadService) */
+    public static class Download {
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        private DataSize parallelMin = DataSize.ofMegabytes(256);   // smaller objects (or no Accept-Ranges): one GET
+        private int concurrency = 4;                                // segments in flight per download
+        private int segmentRetries = 3;
+        private Duration retryBackoff = Duration.ofSeconds(1);
+        private Path dir = Path.of(System.getProperty("java.io.tmpdir"), "dservice-downloads");   // targets land here only
+
+        public DataSize getSegmentSize() { return segmentSize; }
+        public void setSegmentSize(DataSize segmentSize) { this.segmentSize = segmentSize; }
+
+        public DataSize getParallelMin() { return parallelMin; }
+        public void setParallelMin(DataSize parallelMin) { this.parallelMin = parallelMin; }
+
+        public int getConcurrency() { return concurrency; }
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        public int getSegmentRetries() { return segmentRetries; }
+        public void setSegmentRetries(int segmentRetries) { this.segmentRetries = segmentRetries; }
+
+        public Duration getRetryBackoff() { return retryBackoff; }
+        public void setRetryBackoff(Duration retryBackoff) { this.retryBackoff = retryBackoff; }
+
+        public Path getDir() { return dir; }
+        public void setDir(Path dir) { this.dir = dir; }
+    }
+
+    /* NEW: request coalescing — identical in-flight GET/HEADs share one upstream exchange */
+    public static class Coalescing {
+        private boolean enabled = true;                             // re-read per call, so /actuator/refresh applies
+        private List<String> keyHeaders = new ArrayList<>(List.of( // requests differing in these never share
+                "X-API-Version", "Accept", "Accept-Language", "Authorization", "Cookie",
+                "If-None-Match", "If-Modified-Since"));
+        private DataSize maxBody = DataSize.ofKilobytes(256);       // shared bodies are buffered; same as the codec limit
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public List<String> getKeyHeaders() { return keyHeaders; }
+        public void setKeyHeaders(List<String> keyHeaders) { this.keyHeaders = keyHeaders; }
+
+        public DataSize getMaxBody() { return maxBody; }
+        public void setMaxBody(DataSize maxBody) { this.maxBody = maxBody; }
+    }
+
+    /* NEW: GET /proxy/users:export */
+    public static class Export {
+        private int pageSize = 200;                                 // users per backend page; ?pageSize= overrides
+        private int maxPageSize = 1000;                             // cap for ?pageSize=
+        private int prefetchPages = 1;                              // pages fetched ahead of the one being written
+
+        public int getPageSize() { return pageSize; }
+        public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+
+        public int getMaxPageSize() { return maxPageSize; }
+        public void setMaxPageSize(int maxPageSize) { this.maxPageSize = maxPageSize; }
+
+        public int getPrefetchPages() { return prefetchPages; }
+        public void setPrefetchPages(int prefetchPages) { this.prefetchPages = prefetchPages; }
+    }
+
+    /* NEW: benchmark + stub endpoints; they write/delete files and push gigabytes upstream, so never on in production */
+    public static class Bench {
+        private boolean enabled = false;   // read at startup: the controllers only exist when true
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    }
+
+    /* NEW: GET /proxy/user-aggregate/{id} */
+    public static class Composite {
+        private Duration deadline = Duration.ofSeconds(2);          // shared by all legs; ?deadlineMs= overrides
+        private Duration maxDeadline = Duration.ofSeconds(10);      // cap for ?deadlineMs=
+
+        public Duration getDeadline() { return deadline; }
+        public void setDeadline(Duration deadline) { this.deadline = deadline; }
+
+        public Duration getMaxDeadline() { return maxDeadline; }
+        public void setMaxDeadline(Duration maxDeadline) { this.maxDeadline = maxDeadline; }
+    }
+
+    /* NEW: batch endpoints */
+    public static class Batch {
+        private Lookup lookup = new Lookup();
+        private Create create = new Create();
+
+        public Lookup getLookup() { return lookup; }
+        public void setLookup(Lookup lookup) { this.lookup = lookup; }
+
+        public Create getCreate() { return create; }
+        public void setCreate(Create create) { this.create = create; }
+    }
+
+    /* NEW: micro-batching of POST /proxy/create-new-user (CreateUserBatcher) */
+    public static class Create {
+        private boolean enabled = false;                            // re-read per call
+        private int maxItems = 100;                                 // flush when this many are waiting… (restart)
+        private Duration maxWait = Duration.ofMillis(10);           // …or when the oldest waited this long (restart)
+        private int queueCapacity = 10_000;                         // beyond this creates get 429; restart to change
+        private int concurrency = 4;                                // bulk calls in flight; restart to change
+        private Duration bulkProbeInterval = Duration.ofMinutes(10);  // send one by one this long after a 404/405/501
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getMaxItems() { return maxItems; }
+        public void setMaxItems(int maxItems) { this.maxItems = maxItems; }
+
+        public Duration getMaxWait() { return maxWait; }
+        public void setMaxWait(Duration maxWait) { this.maxWait = maxWait; }
+
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        public int getConcurrency() { return concurrency; }
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        public Duration getBulkProbeInterval() { return bulkProbeInterval; }
+        public void setBulkProbeInterval(Duration bulkProbeInterval) { this.bulkProbeInterval = bulkProbeInterval; }
+    }
+
+    /* NEW: POST /proxy/users:batchGet */
+    public static class Lookup {
+        private int maxIds = 1000;                                  // distinct ids per call; more → 400
+        private int concurrency = 16;                               // in-flight getById calls when fanning out
+        private Duration fanOutBudget = Duration.ofSeconds(20);     // fan-out is paced to the rate limiter; bigger → 400
+        private boolean bulkEnabled = true;                         // try the backend's POST /users:batchGet first
+        private int bulkMaxIds = 200;                               // ids per bulk call
+        private int bulkConcurrency = 2;                            // in-flight bulk calls
+        private Duration bulkProbeInterval = Duration.ofMinutes(10);  // re-try bulk this long after a 404/405/501
+
+        public int getMaxIds() { return maxIds; }
+        public void setMaxIds(int maxIds) { this.maxIds = maxIds; }
+
+        public int getConcurrency() { return concurrency; }
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        public Duration getFanOutBudget() { return fanOutBudget; }
+        public void setFanOutBudget(Duration fanOutBudget) { this.fanOutBudget = fanOutBudget; }
+
+        public boolean isBulkEnabled() { return bulkEnabled; }
+        public void setBulkEnabled(boolean bulkEnabled) { this.bulkEnabled = bulkEnabled; }
+
+        public int getBulkMaxIds() { return bulkMaxIds; }
+        public void setBulkMaxIds(int bulkMaxIds) { this.bulkMaxIds = bulkMaxIds; }
+
+        public int getBulkConcurrency() { return bulkConcurrency; }
+        public void setBulkConcurrency(int bulkConcurrency) { this.bulkConcurrency = bulkConcurrency; }
+
+        public Duration getBulkProbeInterval() { return bulkProbeInterval; }
+        public void setBulkProbeInterval(Duration bulkProbeInterval) { this.bulkProbeInterval = bulkProbeInterval; }
+    }
+
+    /* NEW: response caching */
+    public static class CacheOptions {
+        private UserCache users = new UserCache();
+        private DiskCache disk = new DiskCache();
+        private NegativeCache negative = new NegativeCache();
+
+        public UserCache getUsers() { return users; }
+        public void setUsers(UserCache users) { this.users = users; }
+
+        public DiskCache getDisk() { return disk; }
+        public void setDisk(DiskCache disk) { this.disk = disk; }
+
+        public NegativeCache getNegative() { return negative; }
+        public void setNegative(NegativeCache negative) { this.negative = negative; }
+    }
+
+    /* NEW: remembered 404s for idempotent calls (NegativeCacheFilter) */
+    public static class NegativeCache {
+        private boolean enabled = true;                             // re-read per call
+        private Duration ttl = Duration.ofSeconds(30);              // restart to change
+        private long maxEntries = 100_000;                          // exact tier, evicted by W-TinyLFU
+        private Bloom bloom = new Bloom();
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public Duration getTtl() { return ttl; }
+        public void setTtl(Duration ttl) { this.ttl = ttl; }
+
+        public long getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(long maxEntries) { this.maxEntries = maxEntries; }
+
+        public Bloom getBloom() { return bloom; }
+        public void setBloom(Bloom bloom) { this.bloom = bloom; }
+
+        /* NEW: optional probabilistic tier for id spaces too large for the exact one */
+        public static class Bloom {
+            private boolean enabled = false;                        // false positives answer 404 for real ids
+            private long expectedInsertions = 10_000_000;           // per ttl/2 generation
+            private double fpp = 0.001;                             // ~18MB per generation at the defaults
+
+            public boolean isEnabled() { return enabled; }
+            public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+            public long getExpectedInsertions() { return expectedInsertions; }
+            public void setExpectedInsertions(long expectedInsertions) { this.expectedInsertions = expectedInsertions; }
+
+            public double getFpp() { return fpp; }
+            public void setFpp(double fpp) { this.fpp = fpp; }
+        }
+    }
+
+    /* NEW: optional second tier under the user cache — mmap'd append-only segments, survives restarts */
+    public static class DiskCache {
+        private boolean enabled = false;                            // restart to change (segments are opened at startup)
+        private Path dir = Path.of(System.getProperty("java.io.tmpdir"), "dservice-user-cache");
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        private DataSize maxSize = DataSize.ofGigabytes(1);         // oldest segment is dropped beyond this
+        private int indexCapacity = 65536;                          // initial off-heap index slots (grows)
+        private Duration compactionInterval = Duration.ofMinutes(1);
+        private double compactionThreshold = 0.5;                   // rewrite a sealed segment below this live ratio
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public Path getDir() { return dir; }
+        public void setDir(Path dir) { this.dir = dir; }
+
+        public DataSize getSegmentSize() { return segmentSize; }
+        public void setSegmentSize(DataSize segmentSize) { this.segmentSize = segmentSize; }
+
+        public DataSize getMaxSize() { return maxSize; }
+        public void setMaxSize(DataSize maxSize) { this.maxSize = maxSize; }
+
+        public int getIndexCapacity() { return indexCapacity; }
+        public void setIndexCapacity(int indexCapacity) { this.indexCapacity = indexCapacity; }
+
+        public Duration getCompactionInterval() { return compactionInterval; }
+        public void setCompactionInterval(Duration compactionInterval) { this.compactionInterval = compactionInterval; }
+
+        public double getCompactionThreshold() { return compactionThreshold; }
+        public void setCompactionThreshold(double compactionThreshold) { this.compactionThreshold = compactionThreshold; }
+    }
+
+    /* NEW: in-process W-TinyLFU cache for getById / getWithData; TTL from Cache-Control / Expires, 304 revalidation */
+    public static class UserCache {
+        private boolean enabled = true;
+        private DataSize maxWeight = DataSize.ofMegabytes(64);      // approximate JSON size of the cached bodies
+        private Duration defaultTtl = Duration.ofSeconds(60);       // upstream sent neither Cache-Control nor Expires
+        private Duration maxTtl = Duration.ofMinutes(10);           // cap, whatever upstream says
+        private Duration staleWhileRevalidate = Duration.ofSeconds(30);  // unless Cache-Control: stale-while-revalidate=N
+        private Duration staleIfError = Duration.ofMinutes(5);      // unless Cache-Control: stale-if-error=N
+        private Duration keepForRevalidation = Duration.ofMinutes(30);   // stale entries with ETag/Last-Modified
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public DataSize getMaxWeight() { return maxWeight; }
+        public void setMaxWeight(DataSize maxWeight) { this.maxWeight = maxWeight; }
+
+        public Duration getDefaultTtl() { return defaultTtl; }
+        public void setDefaultTtl(Duration defaultTtl) { this.defaultTtl = defaultTtl; }
+
+        public Duration getMaxTtl() { return maxTtl; }
+        public void setMaxTtl(Duration maxTtl) { this.maxTtl = maxTtl; }
+
+        public Duration getStaleWhileRevalidate() { return staleWhileRevalidate; }
+        public void setStaleWhileRevalidate(Duration staleWhileRevalidate) { this.staleWhileRevalidate = staleWhileRevalidate; }
+
+        public Duration getStaleIfError() { return staleIfError; }
+        public void setStaleIfError(Duration staleIfError) { this.staleIfError = staleIfError; }
+
+        public Duration getKeepForRevalidation() { return keepForRevalidation; }
+        public void setKeepForRevalidation(Duration keepForRevalidation) { this.keepForRevalidation = keepForRevalidation; }
+    }
+}
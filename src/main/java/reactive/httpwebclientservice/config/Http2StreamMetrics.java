@@ -0,0 +1,40 @@
+package reactive.httpwebclientservice.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * Per-connection HTTP/2 stream metrics.
+ *  - dservice.http2.connection.active.streams : active streams on the parent connection, sampled every time
+ *    a stream is acquired (max/mean tell us how well we multiplex).
+ * Stream-acquire latency itself comes from Reactor Netty's pool metrics
+ * (reactor.netty.connection.provider.pending.streams.time), we only add percentiles for it.
+ */
+final class Http2StreamMetrics {
+
+    static final String ACTIVE_STREAMS = "dservice.http2.connection.active.streams";
+    static final String STREAM_ACQUIRE_TIME = "reactor.netty.connection.provider.pending.streams.time";
+
+    private Http2StreamMetrics() {}
+
+    static HttpClient instrument(HttpClient http, String connectorName, MeterRegistry registry) {
+        DistributionSummary activeStreams = DistributionSummary.builder(ACTIVE_STREAMS)
+                .description("Active HTTP/2 streams on a connection when a new stream is opened")
+                .tag("connector", connectorName)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+
+        // For H2, doOnConnected fires per stream with the Http2StreamChannel; the codec lives on the parent.
+        return http.doOnConnected(conn -> {
+            if (conn.channel() instanceof Http2StreamChannel stream) {
+                Http2FrameCodec codec = stream.parent().pipeline().get(Http2FrameCodec.class);
+                if (codec != null) {
+                    activeStreams.record(codec.connection().numActiveStreams());
+                }
+            }
+        });
+    }
+}
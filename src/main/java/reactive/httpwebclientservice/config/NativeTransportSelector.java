@@ -0,0 +1,58 @@
+package reactive.httpwebclientservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Decides whether a connector should run on a native transport (epoll / io_uring) or on plain NIO.
+ * Native classes are probed reflectively, so the app still starts when the native jars are missing;
+ * in that case we log a warning and fall back to NIO.
+ *
+ * NB: Reactor Netty picks ONE native transport per JVM (io_uring wins over epoll when both are on the classpath),
+ * so EPOLL / IO_URING here mean "prefer native" + a sanity check that the requested one is really there.
+ */
+final class NativeTransportSelector {
+
+    private static final Logger log = LoggerFactory.getLogger(NativeTransportSelector.class);
+
+    private static final String EPOLL = "io.netty.channel.epoll.Epoll";
+    private static final String IO_URING = "io.netty.incubator.channel.uring.IOUring";
+
+    private NativeTransportSelector() {}
+
+    /** @return the value for {@code HttpClient.runOn(loops, preferNative)}. */
+    static boolean preferNative(DserviceClientProperties.Transport requested, String connectorName) {
+        boolean epoll = isAvailable(EPOLL);
+        boolean ioUring = isAvailable(IO_URING);
+
+        boolean preferNative = switch (requested) {
+            case NIO -> false;
+            case AUTO -> LoopResources.hasNativeSupport();
+            case EPOLL -> {
+                if (ioUring) {
+                    log.warn("[{}] EPOLL requested, but io_uring is also on the classpath; Reactor Netty will use io_uring", connectorName);
+                }
+                yield epoll;
+            }
+            case IO_URING -> ioUring;
+        };
+
+        if (!preferNative && requested != DserviceClientProperties.Transport.NIO
+                && requested != DserviceClientProperties.Transport.AUTO) {
+            log.warn("[{}] Transport {} is not available on this host, falling back to NIO", connectorName, requested);
+        }
+        log.info("[{}] Transport requested={} → {}", connectorName, requested,
+                preferNative ? (ioUring ? "IO_URING" : epoll ? "EPOLL" : "NATIVE") : "NIO");
+        return preferNative;
+    }
+
+    private static boolean isAvailable(String className) {
+        try {
+            Class<?> c = Class.forName(className, false, NativeTransportSelector.class.getClassLoader());
+            return (Boolean) c.getMethod("isAvailable").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return false; // class not on the classpath or native lib could not be loaded
+        }
+    }
+}
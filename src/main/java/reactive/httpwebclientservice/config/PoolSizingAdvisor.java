@@ -0,0 +1,160 @@
+package reactive.httpwebclientservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional controller that sizes the connection pools from live metrics instead of copied guesses.
+ *
+ * Every {@code dservice.http.pool.auto-tune.interval} and for each pool it reads:
+ *  - λ  = acquires/sec       (count delta of reactor.netty.connection.provider.pending.connections.time)
+ *  - W  = mean latency       (http.client.requests{client.pool} of that pool over the same window)
+ *  - active / pending        (reactor.netty.connection.provider.active|pending.connections)
+ * Little's law gives the connections in use on average, L = λ·W. We size for
+ * max(L, active + pending) × headroom, clamped to [min, max], and report the decision
+ * on /actuator/poolsizing. W is per pool: a multi-hour upload is only recorded when it completes, and would
+ * otherwise turn the default pool's milliseconds into seconds for that window (and a bogus GROW).
+ */
+@Component
+@ConditionalOnProperty(prefix = "dservice.http.pool.auto-tune", name = "enabled", havingValue = "true")
+public class PoolSizingAdvisor {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolSizingAdvisor.class);
+
+    private static final String ACTIVE = "reactor.netty.connection.provider.active.connections";
+    private static final String PENDING = "reactor.netty.connection.provider.pending.connections";
+    private static final String ACQUIRE_TIME = "reactor.netty.connection.provider.pending.connections.time";
+    private static final String CLIENT_REQUESTS = "http.client.requests";
+    private static final String CLIENT_POOL_TAG = "client.pool";   // see webClientObservationConvention
+    private static final int HISTORY = 20;
+
+    public enum Action { GROW, SHRINK, KEEP }
+
+    public record Decision(Instant at, String pool, double requestsPerSec, double meanLatencyMs,
+                           double littleL, double active, double pending, double meanAcquireMs,
+                           int currentMax, int recommendedMax, Action action) {}
+
+    /** Running totals from the previous evaluation, so we can work on deltas. */
+    private record Totals(long nanos, long acquires, double acquireMs, long requests, double requestMs) {}
+
+    private final MeterRegistry registry;
+    private final DserviceClientProperties props;
+    private final Map<String, Totals> previous = new ConcurrentHashMap<>();
+    private final Map<String, Deque<Decision>> history = new ConcurrentHashMap<>();
+    private volatile Disposable ticker;
+
+    public PoolSizingAdvisor(MeterRegistry registry, DserviceClientProperties props) {
+        this.registry = registry;
+        this.props = props;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        var interval = props.getHttp().getPool().getAutoTune().getInterval();
+        ticker = Flux.interval(interval, interval)
+                .subscribe(t -> evaluateAll(), err -> log.error("Pool sizing advisor stopped", err));
+        log.info("Pool sizing advisor started (interval {})", interval);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) ticker.dispose();
+    }
+
+    /** Latest decision per pool + recent history (newest first). */
+    public Map<String, List<Decision>> decisions() {
+        Map<String, List<Decision>> out = new TreeMap<>();
+        history.forEach((pool, d) -> {
+            synchronized (d) {
+                out.put(pool, new ArrayList<>(d));
+            }
+        });
+        return out;
+    }
+
+    public Optional<Decision> latest(String pool) {
+        Deque<Decision> d = history.get(pool);
+        if (d == null) return Optional.empty();
+        synchronized (d) {
+            return Optional.ofNullable(d.peekFirst());
+        }
+    }
+
+    void evaluateAll() {
+        evaluate(ApplicationBeanConfiguration.DEFAULT_POOL);
+        evaluate(ApplicationBeanConfiguration.UPLOAD_POOL);
+    }
+
+    private void evaluate(String pool) {
+        var tune = props.getHttp().getPool().getAutoTune();
+        int currentMax = props.getHttp().getPool().getMaxConnections();
+
+        Collection<Timer> acquireTimers = registry.find(ACQUIRE_TIME).tag("name", pool).timers();
+        Collection<Timer> requestTimers = registry.find(CLIENT_REQUESTS).tag(CLIENT_POOL_TAG, pool).timers();
+        Totals now = new Totals(
+                System.nanoTime(),
+                acquireTimers.stream().mapToLong(Timer::count).sum(),
+                acquireTimers.stream().mapToDouble(t -> t.totalTime(TimeUnit.MILLISECONDS)).sum(),
+                requestTimers.stream().mapToLong(Timer::count).sum(),
+                requestTimers.stream().mapToDouble(t -> t.totalTime(TimeUnit.MILLISECONDS)).sum());
+        Totals before = previous.put(pool, now);
+        if (before == null) {
+            return; // first sample only establishes the baseline
+        }
+
+        double seconds = (now.nanos() - before.nanos()) / 1e9;
+        long acquires = now.acquires() - before.acquires();
+        long requests = now.requests() - before.requests();
+        double lambda = seconds > 0 ? acquires / seconds : 0;
+        double meanLatencyMs = requests > 0 ? (now.requestMs() - before.requestMs()) / requests : 0;
+        double meanAcquireMs = acquires > 0 ? (now.acquireMs() - before.acquireMs()) / acquires : 0;
+        double littleL = lambda * (meanLatencyMs / 1000.0);
+        double active = sumGauges(ACTIVE, pool);
+        double pending = sumGauges(PENDING, pool);
+
+        int needed = (int) Math.ceil(Math.max(littleL, active + pending) * tune.getHeadroom());
+        int recommended = Math.max(tune.getMinConnections(), Math.min(tune.getMaxConnections(), needed));
+
+        Action action;
+        if (recommended > currentMax && pending > 0) {
+            action = Action.GROW;           // callers are queueing for a connection
+        } else if (recommended < currentMax / 2) {
+            action = Action.SHRINK;         // less than half the sockets would ever be used
+        } else {
+            action = Action.KEEP;
+        }
+
+        Decision decision = new Decision(Instant.now(), pool, lambda, meanLatencyMs, littleL,
+                active, pending, meanAcquireMs, currentMax, recommended, action);
+        Deque<Decision> d = history.computeIfAbsent(pool, k -> new ArrayDeque<>());
+        synchronized (d) {
+            d.addFirst(decision);
+            while (d.size() > HISTORY) d.removeLast();
+        }
+        if (action != Action.KEEP) {
+            log.info("[{}] pool sizing: {} maxConnections {} → {} (λ={}/s, W={} ms, L={}, active={}, pending={})",
+                    pool, action, currentMax, recommended,
+                    String.format("%.1f", lambda), String.format("%.1f", meanLatencyMs),
+                    String.format("%.1f", littleL), active, pending);
+        }
+    }
+
+    private double sumGauges(String name, String pool) {
+        return registry.find(name).tag("name", pool).gauges().stream().mapToDouble(Gauge::value).sum();
+    }
+}
@@ -0,0 +1,27 @@
+package reactive.httpwebclientservice.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/** GET /actuator/poolsizing — what the PoolSizingAdvisor decided, per pool (newest first). */
+@Component
+@ConditionalOnProperty(prefix = "dservice.http.pool.auto-tune", name = "enabled", havingValue = "true")
+@Endpoint(id = "poolsizing")
+public class PoolSizingEndpoint {
+
+    private final PoolSizingAdvisor advisor;
+
+    public PoolSizingEndpoint(PoolSizingAdvisor advisor) {
+        this.advisor = advisor;
+    }
+
+    @ReadOperation
+    public Map<String, List<PoolSizingAdvisor.Decision>> decisions() {
+        return advisor.decisions();
+    }
+}
@@ -0,0 +1,73 @@
+package reactive.httpwebclientservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ClientHttpRequest;
+import org.springframework.http.client.reactive.ClientHttpResponse;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A ClientHttpConnector whose ConnectionProvider + HttpClient can be swapped at runtime.
+ * WebClients keep pointing at this instance; every exchange picks up the current generation.
+ * On {@link #reload()} the new pool takes all NEW requests at once, while the old pool is disposed
+ * gracefully: in-flight exchanges finish on their connection, which is closed when released
+ * (bounded by dservice.http.pool.drain-timeout).
+ */
+public class ReloadableClientHttpConnector implements ClientHttpConnector {
+
+    private static final Logger log = LoggerFactory.getLogger(ReloadableClientHttpConnector.class);
+
+    private record Generation(ConnectionProvider provider, ReactorClientHttpConnector connector) {}
+
+    private final String name;
+    private final Supplier<ConnectionProvider> providers;
+    private final Function<ConnectionProvider, ReactorClientHttpConnector> connectors;
+    private final AtomicReference<Generation> current = new AtomicReference<>();
+
+    public ReloadableClientHttpConnector(String name,
+                                         Supplier<ConnectionProvider> providers,
+                                         Function<ConnectionProvider, ReactorClientHttpConnector> connectors) {
+        this.name = name;
+        this.providers = providers;
+        this.connectors = connectors;
+        this.current.set(newGeneration());
+    }
+
+    @Override
+    public Mono<ClientHttpResponse> connect(HttpMethod method, URI uri,
+                                            Function<? super ClientHttpRequest, Mono<Void>> requestCallback) {
+        return Mono.defer(() -> current.get().connector().connect(method, uri, requestCallback));
+    }
+
+    /** Build a new pool/client from the current properties and swap it in atomically. */
+    public void reload() {
+        Generation next = newGeneration(); // build first: if this throws, the old one stays in place
+        Generation old = current.getAndSet(next);
+        log.info("[{}] Swapped HTTP client, draining old pool '{}'", name, old.provider().name());
+        old.provider().disposeLater()
+                .subscribe(null, err -> log.warn("[{}] Error while draining old pool: {}", name, err.toString()));
+    }
+
+    /** The pool currently serving new requests. */
+    public ConnectionProvider currentProvider() {
+        return current.get().provider();
+    }
+
+    public void dispose() {
+        current.get().provider().dispose();
+    }
+
+    private Generation newGeneration() {
+        ConnectionProvider provider = providers.get();
+        return new Generation(provider, connectors.apply(provider));
+    }
+}
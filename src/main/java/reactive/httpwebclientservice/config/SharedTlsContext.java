@@ -0,0 +1,167 @@
+package reactive.httpwebclientservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.ReferenceCountedOpenSslEngine;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.netty.http.client.HttpClient;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One client SslContext for the whole app (instead of one per connector).
+ *  - OpenSSL/BoringSSL (netty-tcnative) when available, JDK otherwise
+ *  - session cache, so reconnects to the same host resume instead of doing a full handshake
+ *  - configurable ciphers / protocols / ALPN
+ * Metrics:
+ *  - dservice.tls.handshake{connector, provider, resumed}  (timer; resumption rate = resumed=true / all)
+ *  - dservice.tls.handshake.failures{connector}
+ */
+public class SharedTlsContext {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedTlsContext.class);
+
+    static final String HANDSHAKE = "dservice.tls.handshake";
+
+    private final SslContext sslContext;
+    private final SslProvider provider;
+    private final MeterRegistry registry;
+    private final Set<String> seenSessionIds;   // JDK provider only, see isResumed
+
+    public SharedTlsContext(DserviceClientProperties.Tls tls, MeterRegistry registry) {
+        this.registry = registry;
+        long remembered = Math.max(1, tls.getSessionCacheSize());
+        this.seenSessionIds = Collections.newSetFromMap(Collections.synchronizedMap(
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                        return size() > remembered;
+                    }
+                }));
+        this.provider = resolveProvider(tls.getProvider());
+
+        SslContextBuilder builder = SslContextBuilder.forClient()
+                .sslProvider(provider)
+                .sessionCacheSize(tls.getSessionCacheSize())
+                .sessionTimeout(tls.getSessionTimeout().toSeconds())
+                .applicationProtocolConfig(new ApplicationProtocolConfig(
+                        ApplicationProtocolConfig.Protocol.ALPN,
+                        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                        tls.getAlpn()));
+
+        // HTTP/2 forbids a long list of weak ciphers, so default to the H2-safe list (same as Reactor Netty does).
+        builder.ciphers(tls.getCiphers().isEmpty() ? Http2SecurityUtil.CIPHERS : tls.getCiphers(),
+                SupportedCipherSuiteFilter.INSTANCE);
+        if (!tls.getProtocols().isEmpty()) {
+            builder.protocols(tls.getProtocols());
+        }
+
+        try {
+            this.sslContext = builder.build();
+        } catch (SSLException e) {
+            throw new IllegalStateException("Cannot build client TLS context", e);
+        }
+        log.info("Shared TLS context: provider={}, sessionCacheSize={}, sessionTimeout={}, alpn={}",
+                provider, tls.getSessionCacheSize(), tls.getSessionTimeout(), tls.getAlpn());
+    }
+
+    public SslContext sslContext() {
+        return sslContext;
+    }
+
+    public SslProvider provider() {
+        return provider;
+    }
+
+    /** Records handshake latency and whether the session was resumed, for every TLS connection of this client. */
+    HttpClient instrument(HttpClient http, String connectorName) {
+        Counter failures = Counter.builder(HANDSHAKE + ".failures").tag("connector", connectorName).register(registry);
+
+        return http.doOnChannelInit((observer, channel, remoteAddress) -> {
+            SslHandler ssl = channel.pipeline().get(SslHandler.class);
+            if (ssl == null) {
+                return; // cleartext
+            }
+            long[] started = new long[1]; // nanoTime when TCP became active
+            channel.pipeline().addFirst(new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelActive(ChannelHandlerContext ctx) throws Exception {
+                    started[0] = System.nanoTime();
+                    ctx.fireChannelActive();
+                    ctx.pipeline().remove(this);
+                }
+            });
+            ssl.handshakeFuture().addListener(f -> {
+                if (!f.isSuccess()) {
+                    failures.increment();
+                    return;
+                }
+                if (started[0] == 0) {
+                    return; // handshake timing not captured
+                }
+                boolean resumed = isResumed(ssl.engine());
+                Timer.builder(HANDSHAKE)
+                        .tag("connector", connectorName)
+                        .tag("provider", provider.name())
+                        .tag("resumed", String.valueOf(resumed))
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(registry)
+                        .record(System.nanoTime() - started[0], TimeUnit.NANOSECONDS);
+            });
+        });
+    }
+
+    /**
+     * OpenSSL says it itself. The JDK engine has no such flag, so a session whose id an earlier handshake already
+     * produced counts as resumed (a full handshake gets a fresh id). Creation times can't be used: OpenSSL keeps them
+     * in whole seconds, so a full handshake in the same second as channelActive looked resumed.
+     */
+    private boolean isResumed(SSLEngine engine) {
+        if (engine instanceof ReferenceCountedOpenSslEngine openSsl) {
+            return openSsl.isSessionReused();
+        }
+        SSLSession session = engine.getSession();
+        byte[] id = session == null ? null : session.getId();
+        if (id == null || id.length == 0) {
+            return false;
+        }
+        return !seenSessionIds.add(HexFormat.of().formatHex(id));
+    }
+
+    private static SslProvider resolveProvider(DserviceClientProperties.TlsProvider wanted) {
+        boolean openSsl = OpenSsl.isAvailable();
+        return switch (wanted) {
+            case JDK -> SslProvider.JDK;
+            case AUTO -> openSsl ? SslProvider.OPENSSL : SslProvider.JDK;
+            case OPENSSL -> {
+                if (!openSsl) {
+                    log.warn("OPENSSL requested but netty-tcnative is not available ({}), falling back to JDK",
+                            OpenSsl.unavailabilityCause() == null ? "unknown" : OpenSsl.unavailabilityCause().toString());
+                    yield SslProvider.JDK;
+                }
+                yield SslProvider.OPENSSL;
+            }
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package reactive.httpwebclientservice.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+import reactive.httpwebclientservice.services.UserLookupService;
+
+import java.util.Map;
+
+/**
+ * GET /actuator/usercache — stats and entries of the user response cache.
+ * DELETE /actuator/usercache — drop everything; DELETE /actuator/usercache/{id} — drop one user (all versions).
+ */
+@Component
+@Endpoint(id = "usercache")
+public class UserCacheEndpoint {
+
+    private final UserLookupService lookups;
+
+    public UserCacheEndpoint(UserLookupService lookups) {
+        this.lookups = lookups;
+    }
+
+    @ReadOperation
+    public Map<String, Object> entries() {
+        return lookups.describe();
+    }
+
+    @DeleteOperation
+    public Map<String, Object> invalidateAll() {
+        return Map.of("invalidated", lookups.invalidateAll());
+    }
+
+    @DeleteOperation
+    public Map<String, Object> invalidate(@Selector Long id) {
+        return Map.of("id", id, "invalidated", lookups.invalidate(id));
+    }
+}
@@ -0,0 +1,392 @@
+package reactive.httpwebclientservice.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactive.httpwebclientservice.HttpClientInterface;
+import reactive.httpwebclientservice.config.DserviceClientProperties.ChunkSourceMode;
+import reactive.httpwebclientservice.services.AdaptiveChunkSizer;
+import reactive.httpwebclientservice.services.FileChunkReader;
+import reactive.httpwebclientservice.services.LargeFileDownloadService;
+import reactive.httpwebclientservice.services.LargeFileUploadService;
+import reactive.httpwebclientservice.utils.PassThrough;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Poor man's benchmarks we run against a real backend-service (see README experiments).
+ * NB: the client-side rate limiter (dservice.resilience.rate-limiter) also applies here,
+ * so raise it before running large call counts, otherwise most calls end up as "errors".
+ * Only registered with dservice.bench.enabled=true; every run has side effects (upstream load, files), hence POST.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "dservice.bench", name = "enabled", havingValue = "true")
+@RequestMapping("/proxy/debug/bench")
+public class BenchmarkController {
+
+    private static final Logger log = LoggerFactory.getLogger(BenchmarkController.class);
+
+    private static final int SYNTHETIC_CHUNK = 64 * 1024;
+    private static final NettyDataBufferFactory SYNTHETIC = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    private final HttpClientInterface users;
+    private final LargeFileUploadService uploads;
+    private final LargeFileDownloadService downloads;
+    private final FileChunkReader files;
+    private final Environment env;
+    private final ObjectMapper mapper;
+
+    public BenchmarkController(HttpClientInterface users, LargeFileUploadService uploads,
+                               LargeFileDownloadService downloads, FileChunkReader files, Environment env,
+                               ObjectMapper mapper) {
+        this.users = users;
+        this.uploads = uploads;
+        this.downloads = downloads;
+        this.files = files;
+        this.env = env;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Small-call latency (getById) with and without a concurrent large upload.
+     * e.g. POST /proxy/debug/bench/small-calls?calls=500&concurrency=16&uploadPath=/tmp/huge.bin
+     */
+    @PostMapping("/small-calls")
+    public Mono<Map<String, Object>> smallCalls(@RequestParam(defaultValue = "1") Long id,
+                                                @RequestParam(defaultValue = "500") int calls,
+                                                @RequestParam(defaultValue = "16") int concurrency,
+                                                @RequestParam(required = false) String uploadPath) {
+        Mono<Map<String, Object>> baseline = measure(id, calls, concurrency);
+        if (uploadPath == null || uploadPath.isBlank()) {
+            return baseline.map(b -> Map.of("baseline", b));
+        }
+
+        Mono<Map<String, Object>> underUpload = Mono.defer(() -> {
+            Disposable upload = Mono.fromCallable(() -> uploads.uploadStreaming(Path.of(uploadPath)))
+                    .flatMap(m -> m)
+                    .subscribe(ok -> log.info("Benchmark upload finished: {}", ok.getStatusCode()),
+                               err -> log.warn("Benchmark upload failed: {}", err.toString()));
+            return Mono.delay(Duration.ofSeconds(1)) // let the upload ramp up first
+                    .then(measure(id, calls, concurrency))
+                    .doFinally(s -> upload.dispose());
+        });
+
+        return baseline.flatMap(b -> underUpload.map(u -> Map.of("baseline", b, "withConcurrentUpload", u)));
+    }
+
+    /**
+     * Upload throughput + CPU per strategy, run one after the other against the backend receiver.
+     * e.g. POST /proxy/debug/bench/upload?path=/tmp/2g.bin&strategies=stream,zero-copy
+     */
+    @PostMapping("/upload")
+    public Mono<Map<String, Map<String, Object>>> upload(@RequestParam("path") String path,
+                                                         @RequestParam(defaultValue = "stream,zero-copy") List<String> strategies) {
+        Path file = Path.of(path);
+        return Flux.fromIterable(strategies)
+                .concatMap(strategy -> timedUpload(strategy, file).map(result -> Map.entry(strategy, result)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, LinkedHashMap::new);
+    }
+
+    /**
+     * Memory check for the pass-through proxy: streams sizeMb of synthetic data (off-heap) through our own
+     * /proxy/upload-pass-through to the backend, sampling heap + pooled direct memory while it runs.
+     * heapGrowthMB should stay in the tens of MB whatever the size (GC noise), never near sizeMb.
+     * e.g. POST /proxy/debug/bench/pass-through?sizeMb=4096
+     */
+    @PostMapping("/pass-through")
+    public Mono<Map<String, Object>> passThrough(@RequestParam(defaultValue = "2048") long sizeMb) {
+        return Mono.defer(() -> {
+            long bytes = sizeMb * 1024 * 1024;
+            long chunks = bytes / SYNTHETIC_CHUNK;
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            long heapBefore = memory.getHeapMemoryUsage().getUsed();
+            AtomicLong heapMax = new AtomicLong(heapBefore);
+            AtomicLong directMax = new AtomicLong();
+            Disposable sampler = Flux.interval(Duration.ofMillis(50)).subscribe(t -> {
+                heapMax.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                directMax.accumulateAndGet(PooledByteBufAllocator.DEFAULT.metric().usedDirectMemory(), Math::max);
+            });
+
+            Flux<DataBuffer> synthetic = Flux.range(0, (int) chunks)
+                    .map(i -> (DataBuffer) SYNTHETIC.wrap(
+                            PooledByteBufAllocator.DEFAULT.directBuffer(SYNTHETIC_CHUNK).writeZero(SYNTHETIC_CHUNK)));
+
+            long start = System.nanoTime();
+            return WebClient.create("http://localhost:" + env.getProperty("local.server.port", "8080"))
+                    .post()
+                    .uri("/proxy/upload-pass-through")
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(chunks * SYNTHETIC_CHUNK)
+                    .body(BodyInserters.fromDataBuffers(synthetic))
+                    .retrieve()
+                    .toBodilessEntity()
+                    .map(resp -> {
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        Map<String, Object> m = new LinkedHashMap<>();
+                        m.put("status", resp.getStatusCode().value());
+                        m.put("bytes", chunks * SYNTHETIC_CHUNK);
+                        m.put("seconds", seconds);
+                        m.put("MBps", chunks * SYNTHETIC_CHUNK / 1024.0 / 1024.0 / seconds);
+                        m.put("heapBeforeMB", heapBefore / 1024.0 / 1024.0);
+                        m.put("heapMaxMB", heapMax.get() / 1024.0 / 1024.0);
+                        m.put("heapGrowthMB", (heapMax.get() - heapBefore) / 1024.0 / 1024.0);
+                        m.put("pooledDirectMaxMB", directMax.get() / 1024.0 / 1024.0);
+                        return m;
+                    })
+                    .doFinally(s -> sampler.dispose());
+        });
+    }
+
+    /**
+     * Download throughput against the local stub (/proxy/debug/stub/objects/{bytes}), once per concurrency value,
+     * so the effect of parallel Range segments is visible without a backend. Files are deleted afterwards.
+     * e.g. POST /proxy/debug/bench/download?sizeMb=2048&concurrency=1,4,8&dir=/tmp
+     */
+    @PostMapping("/download")
+    public Mono<Map<String, Map<String, Object>>> download(@RequestParam(defaultValue = "1024") long sizeMb,
+                                                           @RequestParam(defaultValue = "1,4") List<Integer> concurrency,
+                                                           @RequestParam(defaultValue = "/tmp") String dir) {
+        WebClient stub = WebClient.create("http://localhost:" + env.getProperty("local.server.port", "8080"));
+        Map<String, Long> vars = Map.of("bytes", sizeMb * 1024 * 1024);
+        return Flux.fromIterable(concurrency)
+                .concatMap(c -> {
+                    Path target = Path.of(dir, "bench-download-" + c + ".bin");
+                    return downloads.download(stub, "/proxy/debug/stub/objects/{bytes}", vars, target, c)
+                            .doFinally(s -> target.toFile().delete())
+                            .map(result -> Map.entry("concurrency-" + c, result));
+                })
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, LinkedHashMap::new);
+    }
+
+    /**
+     * Read side of the upload path alone: drains files of each size through each chunk source, nothing is sent.
+     * fixed = 64 KB FileChannel reads (the previous behaviour), channel/mapped = adaptive sizer. Files are sparse
+     * (created with setLength) so the numbers are source overhead, not disk speed; use a pre-filled file for that.
+     * e.g. POST /proxy/debug/bench/file-source?sizesMb=1,100,1024,10240&modes=fixed,channel,mapped&dir=/tmp
+     */
+    @PostMapping("/file-source")
+    public Mono<Map<String, Map<String, Object>>> fileSource(@RequestParam(defaultValue = "1,100,1024") List<Long> sizesMb,
+                                                             @RequestParam(defaultValue = "fixed,channel,mapped") List<String> modes,
+                                                             @RequestParam(defaultValue = "/tmp") String dir) {
+        return Flux.fromIterable(sizesMb)
+                .concatMap(mb -> Mono.fromCallable(() -> sparseFile(Path.of(dir, "bench-source-" + mb + "mb.bin"), mb))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMapMany(file -> Flux.fromIterable(modes)
+                                .concatMap(mode -> drain(file, mode)
+                                        .map(result -> Map.entry(mb + "MB-" + mode, result)))
+                                .doFinally(s -> file.toFile().delete())))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, LinkedHashMap::new);
+    }
+
+    /**
+     * getWithData decoded into UserDbDTO and re-encoded (what /user-with-data does) vs the raw bytes
+     * (what /user-with-data-raw does), run one mode after the other. allocatedMB is the heap allocated by all
+     * threads meanwhile, so keep other traffic off while it runs. Raw calls are never coalesced; set
+     * dservice.coalescing.enabled=false (refreshable) so decoded calls each go upstream too.
+     * e.g. POST /proxy/debug/bench/raw-body?id=1&calls=2000&concurrency=16&modes=decoded,raw
+     */
+    @PostMapping("/raw-body")
+    public Mono<Map<String, Map<String, Object>>> rawBody(@RequestParam(defaultValue = "1") Long id,
+                                                          @RequestParam(defaultValue = "2000") int calls,
+                                                          @RequestParam(defaultValue = "16") int concurrency,
+                                                          @RequestParam(defaultValue = "decoded,raw") List<String> modes) {
+        return Flux.fromIterable(modes)
+                .concatMap(mode -> bodyMode(mode, id, calls, concurrency).map(result -> Map.entry(mode, result)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, LinkedHashMap::new);
+    }
+
+    private Mono<Map<String, Object>> bodyMode(String mode, Long id, int calls, int concurrency) {
+        return Mono.defer(() -> {
+            AtomicLong bytes = new AtomicLong();
+            AtomicInteger errors = new AtomicInteger();
+            Mono<?> call = switch (mode) {
+                case "decoded" -> users.getWithData(id, Map.of())
+                        .map(resp -> bytes.addAndGet(encode(resp.getBody())));
+                case "raw" -> users.getWithDataRaw(id, Map.of())
+                        .flatMap(resp -> resp.getBody()
+                                .doOnNext(buf -> {
+                                    bytes.addAndGet(buf.readableByteCount());
+                                    DataBufferUtils.release(buf);
+                                })
+                                .then())
+                        .contextWrite(PassThrough::mark);
+                default -> Mono.error(new IllegalArgumentException("Unknown mode: " + mode));
+            };
+            long allocatedStart = allocatedBytes();
+            long cpuStart = processCpuNanos();
+            long start = System.nanoTime();
+            return Flux.range(0, calls)
+                    .flatMap(i -> timed(call, errors), concurrency)
+                    .collectSortedList()
+                    .map(nanos -> {
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        Map<String, Object> m = summarize(nanos, errors.get());
+                        m.put("callsPerSec", nanos.size() / seconds);
+                        m.put("bodyBytes", bytes.get());
+                        m.put("cpuSeconds", (processCpuNanos() - cpuStart) / 1e9);
+                        long allocated = allocatedBytes() - allocatedStart;
+                        m.put("allocatedMB", allocatedStart < 0 ? null : allocated / 1024.0 / 1024.0);
+                        m.put("allocatedKBPerCall", allocatedStart < 0 || nanos.isEmpty() ? null
+                                : allocated / 1024.0 / nanos.size());
+                        return m;
+                    });
+        });
+    }
+
+    private int encode(Object body) {
+        try {
+            return mapper.writeValueAsBytes(body).length;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Heap allocated so far by all live threads; -1 when the JVM does not expose it. */
+    private static long allocatedBytes() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()
+                ? threads.getTotalThreadAllocatedBytes() : -1;
+    }
+
+    private static Path sparseFile(Path file, long sizeMb) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(sizeMb * 1024 * 1024);
+        }
+        return file;
+    }
+
+    private Mono<Map<String, Object>> drain(Path file, String mode) {
+        return Mono.defer(() -> {
+            Flux<DataBuffer> source = switch (mode) {
+                case "fixed" -> files.read(file, 0, Long.MAX_VALUE, ChunkSourceMode.CHANNEL,
+                        AdaptiveChunkSizer.fixed(SYNTHETIC_CHUNK));
+                case "channel" -> files.read(file, 0, Long.MAX_VALUE, ChunkSourceMode.CHANNEL, files.newSizer());
+                case "mapped" -> files.read(file, 0, Long.MAX_VALUE, ChunkSourceMode.MAPPED, files.newSizer());
+                default -> Flux.error(new IllegalArgumentException("Unknown mode: " + mode));
+            };
+            AtomicLong chunks = new AtomicLong();
+            AtomicLong bytes = new AtomicLong();
+            long cpuStart = processCpuNanos();
+            long start = System.nanoTime();
+            return source
+                    .doOnNext(buf -> {
+                        chunks.incrementAndGet();
+                        bytes.addAndGet(buf.readableByteCount());
+                        DataBufferUtils.release(buf);
+                    })
+                    .then(Mono.fromSupplier(() -> {
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        double cpuSeconds = (processCpuNanos() - cpuStart) / 1e9;
+                        Map<String, Object> m = new LinkedHashMap<>();
+                        m.put("bytes", bytes.get());
+                        m.put("seconds", seconds);
+                        m.put("MBps", bytes.get() / 1024.0 / 1024.0 / seconds);
+                        m.put("chunks", chunks.get());
+                        m.put("avgChunkKB", chunks.get() == 0 ? 0 : bytes.get() / 1024.0 / chunks.get());
+                        m.put("cpuSeconds", cpuSeconds);
+                        return m;
+                    }));
+        });
+    }
+
+    private Mono<Map<String, Object>> timedUpload(String strategy, Path file) {
+        return Mono.defer(() -> {
+            long bytes = file.toFile().length();
+            long cpuStart = processCpuNanos();
+            long start = System.nanoTime();
+            return Mono.fromCallable(() -> startUpload(strategy, file))
+                    .flatMap(m -> m)
+                    .map(resp -> {
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        double cpuSeconds = (processCpuNanos() - cpuStart) / 1e9;
+                        Map<String, Object> m = new LinkedHashMap<>();
+                        m.put("status", resp.getStatusCode().value());
+                        m.put("bytes", bytes);
+                        m.put("seconds", seconds);
+                        m.put("MBps", bytes / 1024.0 / 1024.0 / seconds);
+                        m.put("cpuSeconds", cpuSeconds);
+                        m.put("cpuSecondsPerGB", cpuSeconds / (bytes / 1024.0 / 1024.0 / 1024.0));
+                        return m;
+                    });
+        });
+    }
+
+    private Mono<ResponseEntity<Void>> startUpload(String strategy, Path file) throws IOException {
+        return switch (strategy) {
+            case "stream" -> uploads.uploadStreaming(file);
+            case "zero-copy" -> uploads.uploadZeroCopy(file);
+            default -> Mono.error(new IllegalArgumentException("Unknown strategy: " + strategy));
+        };
+    }
+
+    /** Whole-process CPU time (all threads); -1 when the JVM does not expose it. */
+    private static long processCpuNanos() {
+        return ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os
+                ? os.getProcessCpuTime() : -1;
+    }
+
+    private Mono<Map<String, Object>> measure(Long id, int calls, int concurrency) {
+        AtomicInteger errors = new AtomicInteger();
+        return Flux.range(0, calls)
+                .flatMap(i -> timed(users.getById(id, null), errors), concurrency)
+                .collectSortedList()
+                .map(nanos -> summarize(nanos, errors.get()));
+    }
+
+    static Mono<Long> timed(Mono<?> call, AtomicInteger errors) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.then(Mono.fromSupplier(() -> System.nanoTime() - start));
+        }).onErrorResume(e -> {
+            errors.incrementAndGet();
+            return Mono.empty();
+        });
+    }
+
+    static Map<String, Object> summarize(List<Long> sortedNanos, int errors) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("ok", sortedNanos.size());
+        m.put("errors", errors);
+        m.put("p50Ms", percentileMs(sortedNanos, 0.50));
+        m.put("p90Ms", percentileMs(sortedNanos, 0.90));
+        m.put("p99Ms", percentileMs(sortedNanos, 0.99));
+        m.put("maxMs", percentileMs(sortedNanos, 1.0));
+        return m;
+    }
+
+    private static Double percentileMs(List<Long> sortedNanos, double q) {
+        if (sortedNanos.isEmpty()) return null;
+        int idx = (int) Math.ceil(q * sortedNanos.size()) - 1;
+        long nanos = sortedNanos.get(Math.max(0, Math.min(idx, sortedNanos.size() - 1)));
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,54 @@
+package reactive.httpwebclientservice.controllers;
+
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactive.httpwebclientservice.services.LargeFileDownloadService;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/proxy")
+public class DownloadProxyController {
+
+    // headers of the backend response that matter to the caller of /download-stream
+    private static final List<String> FORWARDED = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.CONTENT_RANGE, HttpHeaders.ACCEPT_RANGES, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.CONTENT_DISPOSITION, HttpHeaders.CONTENT_ENCODING);
+
+    private final LargeFileDownloadService service;
+
+    public DownloadProxyController(LargeFileDownloadService service) {
+        this.service = service;
+    }
+
+    // NEW: backend object → file {target} of dservice.download.dir (a plain file name; parallel Range segments
+    // when possible); re-run to resume
+    @PostMapping("/download")
+    public Mono<Map<String, Object>> download(@RequestParam("name") String name,
+                                              @RequestParam("target") String target) {
+        return service.download(name, target);
+    }
+
+    // NEW: backend object → caller, buffer by buffer; the caller's Range header is honoured by the backend
+    @GetMapping("/download-stream")
+    public Mono<ResponseEntity<StreamingResponseBody>> downloadStream(@RequestParam("name") String name,
+                                                                      @RequestHeader HttpHeaders headers) {
+        return service.stream(name, headers).map(entity -> {
+            HttpHeaders out = new HttpHeaders();
+            FORWARDED.forEach(h -> {
+                List<String> values = entity.getHeaders().get(h);
+                if (values != null) out.put(h, values);
+            });
+            // runs on the MVC async executor; blocks it per buffer, so the backend is read at the caller's pace
+            StreamingResponseBody body = os -> DataBufferUtils.write(entity.getBody(), os)
+                    .map(DataBufferUtils::release)
+                    .blockLast();
+            return ResponseEntity.status(entity.getStatusCode()).headers(out).body(body);
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package reactive.httpwebclientservice.controllers;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Local stand-in for the backend download endpoint, for the download benchmark: serves {bytes} zero bytes
+ * with an ETag and Accept-Ranges. Range requests are answered (206) by Spring MVC's Resource handling.
+ * Only registered with dservice.bench.enabled=true, like the benchmarks that use it.
+ */
+@RestController
+@ConditionalOnProperty(prefix = "dservice.bench", name = "enabled", havingValue = "true")
+@RequestMapping("/proxy/debug/stub")
+public class DownloadStubController {
+
+    @GetMapping("/objects/{bytes}")
+    public ResponseEntity<Resource> object(@PathVariable long bytes) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .eTag("\"stub-" + bytes + "\"")
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .body(new ZeroResource(bytes));
+    }
+
+    /** n zero bytes, without holding them: reads fill the caller's array, skips are O(1). */
+    private static final class ZeroResource extends AbstractResource {
+        private final long length;
+
+        ZeroResource(long length) {
+            this.length = length;
+        }
+
+        @Override
+        public String getDescription() {
+            return "stub object of " + length + " bytes";
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                private long remaining = length;
+
+                @Override
+                public int read() {
+                    if (remaining <= 0) return -1;
+                    remaining--;
+                    return 0;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (remaining <= 0) return -1;
+                    int n = (int) Math.min(len, remaining);
+                    Arrays.fill(b, off, off + n, (byte) 0);
+                    remaining -= n;
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) {
+                    long skipped = Math.max(0, Math.min(n, remaining));
+                    remaining -= skipped;
+                    return skipped;
+                }
+            };
+        }
+    }
+}
@@ -1,21 +1,46 @@
 package reactive.httpwebclientservice.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.services.DedupUploadService;
 import reactive.httpwebclientservice.services.LargeFileUploadService;
+import reactive.httpwebclientservice.services.ParallelUploadService;
+import reactive.httpwebclientservice.services.UploadStrategySelector;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/proxy")
 public class UploadProxyController {
 
     private final LargeFileUploadService service;
+    private final ParallelUploadService parallel;
+    private final DedupUploadService dedup;
+    private final UploadStrategySelector selector;
+    private final DserviceClientProperties props;
 
-    public UploadProxyController(LargeFileUploadService service) {
+    public UploadProxyController(LargeFileUploadService service, ParallelUploadService parallel,
+                                 DedupUploadService dedup, UploadStrategySelector selector,
+                                 DserviceClientProperties props) {
         this.service = service;
+        this.parallel = parallel;
+        this.dedup = dedup;
+        this.selector = selector;
+        this.props = props;
+    }
+
+    // NEW: picks SMALL / MULTIPART / STREAM / ZERO_COPY / PARALLEL itself; the choice is in X-Upload-Strategy
+    @PostMapping("/upload-auto")
+    public Mono<ResponseEntity<Object>> upAuto(@RequestParam("path") String path) {
+        return selector.upload(Path.of(path));
     }
 
     @PostMapping("/upload-small")
@@ -28,10 +53,50 @@ public class UploadProxyController {
         return service.uploadMultipart(Path.of(path));
     }
 
+    // NEW: weight = share of the upload bandwidth when several uploads run at once (dservice.upload.bandwidth)
     @PostMapping("/upload-stream")
-    public Mono<ResponseEntity<Void>> upStream(@RequestParam("path") String path) throws IOException {
-        return service.uploadStreaming(Path.of(path));
+    public Mono<ResponseEntity<Void>> upStream(@RequestParam("path") String path,
+                                               @RequestParam(name = "weight", defaultValue = "0") int weight) throws IOException {
+        return service.uploadStreaming(Path.of(path), weight);
     }
 
-}
+    @PostMapping("/upload-zero-copy")
+    public Mono<ResponseEntity<Void>> upZeroCopy(@RequestParam("path") String path) throws IOException {
+        return service.uploadZeroCopy(Path.of(path));
+    }
 
+    // NEW: streams the request body itself to the backend (no local file needed), e.g.
+    //   curl -T big.bin -H 'Content-Type: application/octet-stream' localhost:8080/proxy/upload-pass-through
+    // It lasts as long as the body, so it has its own async timeout (dservice.upload.pass-through-timeout) rather
+    // than a raised spring.mvc.async.request-timeout for every endpoint; on timeout the upload is cancelled.
+    @RequestMapping(path = "/upload-pass-through", method = {RequestMethod.POST, RequestMethod.PUT})
+    public DeferredResult<ResponseEntity<Void>> upPassThrough(HttpServletRequest request,
+                                                              @RequestHeader HttpHeaders headers,
+                                                              @RequestParam(name = "weight", defaultValue = "0") int weight) {
+        DeferredResult<ResponseEntity<Void>> result =
+                new DeferredResult<>(props.getUpload().getPassThroughTimeout().toMillis());
+        Disposable upload = service.uploadPassThrough(request::getInputStream, headers, weight)
+                .subscribe(result::setResult, result::setErrorResult);
+        result.onCompletion(upload::dispose);
+        return result;
+    }
+
+    // NEW: ranged multi-part upload; calling it again after a failure resumes from the checkpoint
+    @PostMapping("/upload-parallel")
+    public Mono<Map<String, Object>> upParallel(@RequestParam("path") String path,
+                                                @RequestParam(name = "weight", defaultValue = "0") int weight) {
+        return parallel.upload(Path.of(path), weight);
+    }
+
+    @GetMapping("/upload-parallel/progress")
+    public ResponseEntity<ParallelUploadService.Progress> upParallelProgress(@RequestParam("path") String path) {
+        return ResponseEntity.of(parallel.progress(Path.of(path)));
+    }
+
+    // NEW: content-hash deduplicated upload; only chunks the backend lacks are sent
+    @PostMapping("/upload-dedup")
+    public Mono<Map<String, Object>> upDedup(@RequestParam("path") String path) {
+        return dedup.upload(Path.of(path));
+    }
+
+}
@@ -1,12 +1,23 @@
 package reactive.httpwebclientservice.controllers;
 
 import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import reactive.httpwebclientservice.DTOs.db.UserDTO;
 import reactive.httpwebclientservice.DTOs.db.UserDbDTO;
 import reactive.httpwebclientservice.HttpClientInterface;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.services.UserAggregateService;
+import reactive.httpwebclientservice.services.UserBatchService;
+import reactive.httpwebclientservice.services.UserExportService;
+import reactive.httpwebclientservice.services.UserLookupService;
+import reactive.httpwebclientservice.utils.PassThrough;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
@@ -22,11 +33,28 @@ import static reactive.httpwebclientservice.utils.Correlation.*;
 @RequestMapping("/proxy")       // <— choose any prefix you like
 public class UserProxyController {
 
+    // NEW: backend response headers passed on by /user-with-data-raw
+    private static final List<String> RAW_FORWARDED = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.CONTENT_ENCODING, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.CACHE_CONTROL,
+            HttpHeaders.EXPIRES);
+
     private final HttpClientInterface users;
+    private final UserLookupService lookups;   // NEW: cached getById / getWithData
+    private final UserBatchService batches;    // NEW: users:batchGet
+    private final UserAggregateService aggregates;   // NEW: user-aggregate
+    private final UserExportService exports;         // NEW: users:export
+    private final DserviceClientProperties props;
     private final MeterRegistry registry;
 
-    public UserProxyController(HttpClientInterface users, MeterRegistry registry) {
+    public UserProxyController(HttpClientInterface users, UserLookupService lookups, UserBatchService batches,
+                               UserAggregateService aggregates, UserExportService exports,
+                               DserviceClientProperties props, MeterRegistry registry) {
         this.users = users;
+        this.lookups = lookups;
+        this.batches = batches;
+        this.aggregates = aggregates;
+        this.exports = exports;
+        this.props = props;
         this.registry = registry;
     }
 
@@ -38,7 +66,7 @@ public class UserProxyController {
         //Always return the Mono (or Flux).
         //That 'return value' is the contract you make with WebFlux. The incoming request has a Netty channel and
         //that 'return value' is what ties that channel to your reactive pipeline.
-        return users.create(body);                 // non-blocking
+        return lookups.create(body);               // non-blocking; drops cached entries for the new id
     }
 
     @GetMapping("/user/{id}")
@@ -50,7 +78,36 @@ public class UserProxyController {
         //Always return the Mono (or Flux).
         //That 'return value' is the contract you make with WebFlux. The incoming request has a Netty channel and
         //that 'return value' is what ties that channel to your reactive pipeline.
-        return users.getById(id, ver);             // non-blocking
+        return lookups.getById(id, ver);           // non-blocking; served from the user cache when fresh
+    }
+
+    // NEW: body = JSON array of ids; one result per distinct id, in request order, each with its own status
+    @PostMapping("/users:batchGet")
+    public Mono<ResponseEntity<Map<String, Object>>> batchGet(
+            @RequestBody List<Long> ids,
+            @RequestHeader(value = "X-API-Version", required = false) String ver) {
+
+        List<Long> distinct = UserBatchService.distinct(ids);
+        int max = props.getBatch().getLookup().getMaxIds();
+        if (distinct.size() > max) {
+            return Mono.just(ResponseEntity.badRequest()
+                    .body(Map.of("error", "At most " + max + " distinct ids per batch", "count", distinct.size())));
+        }
+        int fanOutMax = batches.fanOutMaxIds();
+        if (!batches.bulkAvailable() && distinct.size() > fanOutMax) {
+            // no bulk API: ids go one getById at a time, paced to the client-side rate limiter
+            return Mono.just(ResponseEntity.badRequest()
+                    .body(Map.of("error", "At most " + fanOutMax
+                                    + " distinct ids per batch while the backend has no bulk API",
+                            "count", distinct.size())));
+        }
+        return batches.getByIds(distinct, ver).map(ResponseEntity::ok);
+    }
+
+    // NEW: every user, one JSON object per line, written as the backend pages arrive (client-paced)
+    @GetMapping(value = "/users:export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserDbDTO> export(@RequestParam(required = false) Integer pageSize) {
+        return exports.exportAll(pageSize);
     }
 
     @GetMapping("/user-fast/{id}")
@@ -70,7 +127,38 @@ public class UserProxyController {
         //Always return the Mono (or Flux).
         //That 'return value' is the contract you make with WebFlux. The incoming request has a Netty channel and
         //that 'return value' is what ties that channel to your reactive pipeline.
-        return users.getWithData(id, headers);     // non-blocking
+        return lookups.getWithData(id, headers);   // non-blocking; served from the user cache when fresh
+    }
+
+    // NEW: /user/{id} + /user-with-data/{id} in parallel under one deadline (?deadlineMs=500); per-part status
+    @GetMapping("/user-aggregate/{id}")
+    public Mono<Map<String, Object>> getAggregate(
+            @PathVariable Long id,
+            @RequestParam(required = false) Long deadlineMs,
+            @RequestHeader Map<String, String> headers) {
+        return aggregates.aggregate(id, headers, deadlineMs == null ? null : Duration.ofMillis(deadlineMs));
+    }
+
+    // NEW: pass-through variant of /user-with-data/{id}: the backend's JSON bytes are streamed to the caller as
+    // they arrive — no UserDbDTO, no re-encode, no codec in-memory limit. Not cached (the cache holds DTOs).
+    @GetMapping("/user-with-data-raw/{id}")
+    public Mono<ResponseEntity<StreamingResponseBody>> getWithDataRaw(
+            @PathVariable Long id,
+            @RequestHeader Map<String, String> headers) {
+        return users.getWithDataRaw(id, headers)
+                .contextWrite(PassThrough::mark)
+                .map(entity -> {
+                    HttpHeaders out = new HttpHeaders();
+                    RAW_FORWARDED.forEach(h -> {
+                        List<String> values = entity.getHeaders().get(h);
+                        if (values != null) out.put(h, values);
+                    });
+                    // same as /download-stream: blocks the MVC async thread per buffer, at the caller's pace
+                    StreamingResponseBody body = os -> DataBufferUtils.write(entity.getBody(), os)
+                            .map(DataBufferUtils::release)
+                            .blockLast();
+                    return ResponseEntity.status(entity.getStatusCode()).headers(out).body(body);
+                });
     }
 
     @GetMapping("/proxy-http-status/{code}")
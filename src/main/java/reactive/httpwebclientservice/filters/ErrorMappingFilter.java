@@ -22,7 +22,8 @@ public class ErrorMappingFilter implements ExchangeFilterFunction {
         return next.exchange(request)
                 // Map non-2xx responses to exceptions (read body once, release connection)
                 .flatMap(resp -> {
-                    if (resp.statusCode().is2xxSuccessful()) {
+                    // 304 answers our own conditional revalidation (UserLookupService): not an error
+                    if (resp.statusCode().is2xxSuccessful() || resp.statusCode().value() == 304) {
                         return Mono.just(resp);
                     }
                     return resp.bodyToMono(String.class)
@@ -10,6 +10,7 @@ import org.springframework.web.reactive.function.client.ClientRequest;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactive.httpwebclientservice.utils.PassThrough;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -51,7 +52,10 @@ public final class HttpLoggingFilter implements ExchangeFilterFunction {
         long start = System.nanoTime();
 
         return next.exchange(request)
-                .flatMap(resp -> bufferAndLogResponse(resp, request, target, start))
+                // NEW: pass-through bodies are streamed to our caller: log the head only, never buffer
+                .flatMap(resp -> Mono.deferContextual(ctx -> PassThrough.isOn(ctx)
+                        ? logHeadOnly(resp, request, target, start)
+                        : bufferAndLogResponse(resp, request, target, start)))
                 .onErrorResume(err -> {
                     target.info("<-- network error for {} {}: {}", request.method(), request.url(), err.toString());
                     return Mono.error(err);
@@ -102,6 +106,14 @@ public final class HttpLoggingFilter implements ExchangeFilterFunction {
         });
     }
 
+    private Mono<ClientResponse> logHeadOnly(ClientResponse resp, ClientRequest req, Logger target, long startNanos) {
+        long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        target.info("<-- {} {} ({} ms to headers)", resp.statusCode().value(), req.url(), tookMs);
+        resp.headers().asHttpHeaders().forEach((k, v) -> target.info("    {}: {}", k, String.join(",", v)));
+        target.info("⤷ [pass-through body; not logged]");
+        return Mono.just(resp);
+    }
+
     private static List<String> redact(String key, List<String> vals) {
         return REDACT.contains(key.toLowerCase()) ? List.of("***") : vals;
     }
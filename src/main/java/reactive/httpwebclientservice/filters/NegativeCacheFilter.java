@@ -0,0 +1,252 @@
+package reactive.httpwebclientservice.filters;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.*;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.exceptions.NotFoundException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Negative cache for idempotent calls (dservice.cache.negative.*): a 404 is remembered per URI template + path +
+ * query + X-API-Version for ttl, and repeats are answered with that 404 without going upstream.
+ *
+ * Registered outermost, before the rate limiter and the bulkhead, so a remembered 404 costs no permit (the point,
+ * against scrapers). It therefore sees upstream 404s already mapped to NotFoundException by ErrorMappingFilter,
+ * and replays its own through an ErrorMappingFilter too: callers get the same NotFoundException either way.
+ *
+ * The exact tier is a bounded Caffeine cache (max-entries). With bloom.enabled, misses are also recorded in a
+ * rotating pair of Bloom filters sized for expected-insertions at fpp: scrapers walking huge id ranges are kept
+ * out for ~ttl at a fixed memory cost, at the price of fpp-rate false 404s for ids that do exist — until their
+ * generation rotates out. A Bloom filter can't delete, so {@link #forget} (user created) records the id in a
+ * small exception set kept for ttl instead: Bloom hits on its paths are ignored until a new 404 is stored for it.
+ * A 2xx for a remembered key clears its exact entry.
+ *
+ * Metrics: dservice.client.negative-cache{result=hit|miss|stored,source=exact|bloom}.
+ */
+public class NegativeCacheFilter implements ExchangeFilterFunction {
+
+    private static final Logger log = LoggerFactory.getLogger(NegativeCacheFilter.class);
+
+    public static final String NEGATIVE_CACHE_HEADER = "X-Negative-Cache";
+
+    private static final String URI_TEMPLATE = WebClient.class.getName() + ".uriTemplate";
+    private static final String API_VERSION = "X-API-Version";
+    private static final Set<HttpMethod> IDEMPOTENT = Set.of(HttpMethod.GET, HttpMethod.HEAD);
+    private static final int MAX_BODY_CHARS = 1024;
+
+    private record Key(HttpMethod method, String template, String path, String query, String apiVersion) {
+        String text() {
+            return method + " " + template + " " + path + "?" + query + " " + apiVersion;
+        }
+    }
+
+    private final DserviceClientProperties props;
+    private final MeterRegistry registry;
+    private final ErrorMappingFilter replay = new ErrorMappingFilter();
+    private final Cache<Key, String> exact;
+    private final Cache<String, Boolean> forgotten;   // last path segments ("/42") the Bloom pair must not answer
+    private final RotatingBloom bloom;
+
+    public NegativeCacheFilter(DserviceClientProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.registry = registry;
+        var cfg = props.getCache().getNegative();
+        this.exact = Caffeine.newBuilder()
+                .maximumSize(cfg.getMaxEntries())
+                .expireAfterWrite(cfg.getTtl())          // restart to change
+                .build();
+        this.forgotten = Caffeine.newBuilder()
+                .maximumSize(cfg.getMaxEntries())
+                .expireAfterWrite(cfg.getTtl())          // by then the Bloom pair has rotated the id out
+                .build();
+        this.bloom = newBloom();
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        var cfg = props.getCache().getNegative();
+        if (!cfg.isEnabled() || !IDEMPOTENT.contains(request.method())) {
+            return next.exchange(request);
+        }
+        Key key = key(request);
+        String body = exact.getIfPresent(key);
+        if (body != null) {
+            return notFound(request, body, "exact");
+        }
+        if (bloom != null && bloom.mightContain(key.text()) && forgotten.getIfPresent(lastSegment(key)) == null) {
+            return notFound(request, "", "bloom");
+        }
+        count("miss", "exact");
+        return next.exchange(request)
+                .doOnNext(resp -> {
+                    if (resp.statusCode().is2xxSuccessful()) {
+                        exact.invalidate(key);
+                    }
+                })
+                .doOnError(NotFoundException.class, err -> {
+                    String text = err.getBody() == null ? "" : err.getBody();
+                    exact.put(key, text.length() > MAX_BODY_CHARS ? text.substring(0, MAX_BODY_CHARS) : text);
+                    if (bloom != null) {
+                        bloom.put(key.text());
+                        forgotten.invalidate(lastSegment(key));
+                    }
+                    count("stored", "exact");
+                    log.debug("Remembering 404 for {} {}", request.method(), request.url());
+                });
+    }
+
+    /** A user with this id now exists: drop its exact entries and stop the Bloom pair answering for it. */
+    public void forget(Long id) {
+        String suffix = "/" + id;
+        List<Key> keys = exact.asMap().keySet().stream().filter(k -> k.path().endsWith(suffix)).toList();
+        exact.invalidateAll(keys);
+        if (bloom != null) {
+            forgotten.put(suffix, Boolean.TRUE);
+        }
+    }
+
+    /** Snapshot for /actuator/usercache. */
+    public Map<String, Object> describe() {
+        var cfg = props.getCache().getNegative();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", cfg.isEnabled());
+        m.put("ttl", cfg.getTtl().toString());
+        m.put("size", exact.estimatedSize());
+        m.put("maxEntries", cfg.getMaxEntries());
+        m.put("bloom", bloom == null ? "disabled" : Map.of("bitsPerGeneration", bloom.bits, "hashes", bloom.hashes,
+                "forgotten", forgotten.estimatedSize()));
+        return m;
+    }
+
+    private Key key(ClientRequest request) {
+        String template = request.attribute(URI_TEMPLATE).map(Object::toString).orElse("");
+        String query = request.url().getRawQuery();
+        return new Key(request.method(), template, request.url().getRawPath(), query == null ? "" : query,
+                request.headers().getFirst(API_VERSION));
+    }
+
+    private static String lastSegment(Key key) {
+        String path = key.path();
+        return path.substring(path.lastIndexOf('/'));
+    }
+
+    /** The remembered 404, through the same error mapping an upstream one gets. */
+    private Mono<ClientResponse> notFound(ClientRequest request, String body, String source) {
+        count("hit", source);
+        ClientResponse replayed = ClientResponse.create(HttpStatus.NOT_FOUND)
+                .header(NEGATIVE_CACHE_HEADER, "HIT")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE)
+                .body(body)
+                .build();
+        return replay.filter(request, r -> Mono.just(replayed));
+    }
+
+    private RotatingBloom newBloom() {
+        var cfg = props.getCache().getNegative().getBloom();
+        if (!cfg.isEnabled()) {
+            return null;
+        }
+        return new RotatingBloom(cfg.getExpectedInsertions(), cfg.getFpp(),
+                props.getCache().getNegative().getTtl().toMillis());
+    }
+
+    private void count(String result, String source) {
+        registry.counter("dservice.client.negative-cache", "result", result, "source", source).increment();
+    }
+
+    /**
+     * Two Bloom generations, swapped every ttl/2: a key put now is seen for between ttl/2 and ttl.
+     * Bits are set with CAS, so puts and lookups need no lock.
+     */
+    static final class RotatingBloom {
+        private final int bits;
+        private final int hashes;
+        private final long halfTtlMillis;
+        private final AtomicLong rotatedAt = new AtomicLong(System.currentTimeMillis());
+        private volatile AtomicLongArray current;
+        private volatile AtomicLongArray previous;
+
+        RotatingBloom(long expectedInsertions, double fpp, long ttlMillis) {
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.bits = (int) Math.min(Math.max(64, m), Integer.MAX_VALUE - 63);
+            this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+            this.halfTtlMillis = Math.max(1, ttlMillis / 2);
+            this.current = new AtomicLongArray((bits + 63) / 64);
+            this.previous = new AtomicLongArray((bits + 63) / 64);
+        }
+
+        void put(String key) {
+            rotateIfDue();
+            long h = hash(key);
+            AtomicLongArray words = current;
+            for (int i = 0; i < hashes; i++) {
+                int bit = bit(h, i);
+                long mask = 1L << (bit & 63);
+                words.getAndUpdate(bit >>> 6, w -> w | mask);
+            }
+        }
+
+        boolean mightContain(String key) {
+            rotateIfDue();
+            long h = hash(key);
+            return contains(current, h) || contains(previous, h);
+        }
+
+        private boolean contains(AtomicLongArray words, long h) {
+            for (int i = 0; i < hashes; i++) {
+                int bit = bit(h, i);
+                if ((words.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rotateIfDue() {
+            long now = System.currentTimeMillis();
+            long at = rotatedAt.get();
+            if (now - at >= halfTtlMillis && rotatedAt.compareAndSet(at, now)) {
+                previous = current;
+                current = new AtomicLongArray((bits + 63) / 64);
+            }
+        }
+
+        /** Kirsch–Mitzenmacher: the i-th hash is h1 + i·h2. */
+        private int bit(long h, int i) {
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            int combined = h1 + i * h2;
+            return (combined & Integer.MAX_VALUE) % bits;
+        }
+
+        private static long hash(String key) {
+            long h = 0xcbf29ce484222325L;                 // FNV-1a 64, then a murmur3 finalizer
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
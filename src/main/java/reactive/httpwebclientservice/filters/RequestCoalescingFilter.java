@@ -0,0 +1,157 @@
+package reactive.httpwebclientservice.filters;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.*;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.utils.Correlation;
+import reactive.httpwebclientservice.utils.PassThrough;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-flight for idempotent calls: while a GET/HEAD is in flight, identical ones (same method, URL and
+ * dservice.coalescing.key-headers values) don't go upstream — they wait for the same exchange and each gets its
+ * own copy of the response. The body is buffered once (up to max-body) so every caller can decode it.
+ *
+ * Sits right inside ErrorMappingFilter: rate limiter, bulkhead and error mapping still run per caller (so a
+ * follower's exception carries its own correlation id), retries run once for the whole group.
+ *  - correlation: the upstream request carries the leader's id; a follower gets its own id back in
+ *    X-Correlation-Id plus X-Coalesced-With = leader's id, and the join is logged with both.
+ *  - cancellation: the exchange is cancelled only when every caller waiting on it has cancelled.
+ *  - pass-through calls (PassThrough context flag) are never coalesced: their bodies are streamed, not buffered.
+ *  - errors: delivered to every caller; the entry is dropped on completion, error or cancel, so the next call
+ *    after a failure goes upstream again.
+ *
+ * Metrics: dservice.client.coalescing{outcome=leader|joined}, dservice.client.coalescing.in-flight.
+ */
+public class RequestCoalescingFilter implements ExchangeFilterFunction {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestCoalescingFilter.class);
+
+    public static final String COALESCED_WITH_HEADER = "X-Coalesced-With";
+
+    private static final Set<HttpMethod> IDEMPOTENT = Set.of(HttpMethod.GET, HttpMethod.HEAD);
+
+    private record Key(HttpMethod method, URI url, List<List<String>> headers) {}
+
+    /** The upstream answer, body read once; every caller gets a fresh ClientResponse over the same bytes. */
+    private record Buffered(ClientResponse template, byte[] body) {
+        ClientResponse copy() {
+            return template.mutate()
+                    .body(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body))))
+                    .build();
+        }
+    }
+
+    private final DserviceClientProperties props;
+    private final Map<Key, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter joined;
+
+    public RequestCoalescingFilter(DserviceClientProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.leaders = Counter.builder("dservice.client.coalescing")
+                .description("Idempotent calls by whether they went upstream (leader) or shared one (joined)")
+                .tag("outcome", "leader")
+                .register(registry);
+        this.joined = Counter.builder("dservice.client.coalescing")
+                .description("Idempotent calls by whether they went upstream (leader) or shared one (joined)")
+                .tag("outcome", "joined")
+                .register(registry);
+        Gauge.builder("dservice.client.coalescing.in-flight", inFlight, Map::size)
+                .description("Distinct upstream exchanges currently shared by coalesced calls")
+                .register(registry);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!props.getCoalescing().isEnabled() || !IDEMPOTENT.contains(request.method())) {
+            return next.exchange(request);
+        }
+        return Mono.deferContextual(ctx -> {
+            if (PassThrough.isOn(ctx)) {
+                return next.exchange(request);   // streamed bodies are neither buffered nor shared
+            }
+            String corrId = ctx.hasKey(Correlation.CTX_KEY) ? ctx.get(Correlation.CTX_KEY) : Correlation.newId();
+            Key key = key(request);
+            InFlight created = new InFlight(key, corrId, request, next);
+            InFlight flight = inFlight.putIfAbsent(key, created);
+            if (flight == null) {
+                leaders.increment();
+                return created.shared.map(Buffered::copy);
+            }
+            joined.increment();
+            log.debug("{} {} corr={} joined the in-flight exchange corr={}",
+                    request.method(), request.url(), corrId, flight.leaderCorrId);
+            return flight.shared.map(b -> b.copy().mutate()
+                    .headers(h -> {
+                        h.set(Correlation.HEADER, corrId);
+                        h.set(COALESCED_WITH_HEADER, flight.leaderCorrId);
+                    })
+                    .build());
+        });
+    }
+
+    private Key key(ClientRequest request) {
+        List<List<String>> values = props.getCoalescing().getKeyHeaders().stream()
+                .map(h -> request.headers().getOrEmpty(h))
+                .toList();
+        return new Key(request.method(), request.url(), values);
+    }
+
+    /** One upstream exchange and the callers waiting on it. */
+    private final class InFlight {
+        final String leaderCorrId;
+        final Mono<Buffered> shared;
+        private volatile Mono<Buffered> outcome;   // the exchange's result once it has terminated
+
+        InFlight(Key key, String leaderCorrId, ClientRequest request, ExchangeFunction next) {
+            this.leaderCorrId = leaderCorrId;
+            // lazy: nothing runs unless this instance won the putIfAbsent and the leader subscribes.
+            // refCount: the exchange is cancelled once the last waiting caller cancels — but once it has
+            // terminated, refCount would reconnect for a caller that joins before the removal and start a second
+            // exchange (with the leader's request and correlation id). So the terminal signal is kept in
+            // outcome first, and a reconnect replays it instead of exchanging again.
+            this.shared = Mono.defer(() -> {
+                        Mono<Buffered> done = outcome;
+                        return done != null ? done : next.exchange(request)
+                                .flatMap(this::buffer)
+                                .doOnSuccess(b -> outcome = b == null ? Mono.empty() : Mono.just(b))
+                                .doOnError(err -> outcome = Mono.error(err));
+                    })
+                    .contextWrite(c -> c.put(Correlation.CTX_KEY, leaderCorrId))
+                    .doFinally(s -> inFlight.remove(key, this))
+                    .flux()
+                    .replay(1)
+                    .refCount()
+                    .singleOrEmpty();
+        }
+
+        private Mono<Buffered> buffer(ClientResponse resp) {
+            int maxBody = (int) props.getCoalescing().getMaxBody().toBytes();
+            return DataBufferUtils.join(resp.body(BodyExtractors.toDataBuffers()), maxBody)
+                    .map(buf -> {
+                        byte[] bytes = new byte[buf.readableByteCount()];
+                        buf.read(bytes);
+                        DataBufferUtils.release(buf);
+                        return bytes;
+                    })
+                    .defaultIfEmpty(new byte[0])
+                    .map(bytes -> new Buffered(resp, bytes));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package reactive.httpwebclientservice.services;
+
+/**
+ * Chunk size for one body, driven by how fast the write side asks for more.
+ *
+ * Every time the source is asked for a chunk, the time since the previous request tells how quickly the last
+ * chunk was taken: an EWMA of those rates × target-chunk-time gives the next size (power of two in [min, max]).
+ * A fast link therefore gets big chunks (fewer syscalls and buffers per GB), a slow one small chunks (less memory
+ * parked in each in-flight upload). When no demand came for stall-time the write side is backed up: halve at once.
+ *
+ * One instance per subscription; not thread-safe (the source calls it serially).
+ */
+public final class AdaptiveChunkSizer {
+
+    private static final double ALPHA = 0.2;
+
+    private final int min;
+    private final int max;
+    private final long targetNanos;
+    private final long stallNanos;
+
+    private int size;
+    private long lastRequest;
+    private int lastEmitted;
+    private double bytesPerNano;
+
+    public AdaptiveChunkSizer(int min, int initial, int max, long targetNanos, long stallNanos) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.size = clamp(initial);
+        this.targetNanos = targetNanos;
+        this.stallNanos = stallNanos;
+    }
+
+    /** Fixed size, never adapts (baseline for benchmarks). */
+    public static AdaptiveChunkSizer fixed(int size) {
+        return new AdaptiveChunkSizer(size, size, size, 0, Long.MAX_VALUE);
+    }
+
+    /** Size of the chunk to read now. */
+    public int next() {
+        long now = System.nanoTime();
+        if (lastRequest != 0 && lastEmitted > 0 && min < max) {
+            long gap = Math.max(1, now - lastRequest);
+            if (gap >= stallNanos) {
+                size = clamp(size / 2);
+            } else {
+                double sample = lastEmitted / (double) gap;
+                bytesPerNano = bytesPerNano == 0 ? sample : bytesPerNano * (1 - ALPHA) + sample * ALPHA;
+                size = clamp(Integer.highestOneBit((int) Math.min(Integer.MAX_VALUE, bytesPerNano * targetNanos)));
+            }
+        }
+        lastRequest = now;
+        return size;
+    }
+
+    /** n bytes went out for the last next(). */
+    public void emitted(int n) {
+        lastEmitted = n;
+    }
+
+    public int current() {
+        return size;
+    }
+
+    private int clamp(int v) {
+        return Math.max(min, Math.min(max, v));
+    }
+}
@@ -0,0 +1,227 @@
+package reactive.httpwebclientservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Weighted fair sharing of the upload bandwidth (dservice.upload.bandwidth.*).
+ *
+ * Each running upload opens a {@link Lane}. Its body is paced with {@link Lane#pace}: a buffer is only passed
+ * downstream once the lane has credit for it, so the file is read no faster than it may be sent — backpressure,
+ * no sleeping threads. Every tick the global budget (limit-per-second × tick) is split between the lanes that are
+ * waiting, in proportion to their weight; idle lanes get nothing, so their share goes to the busy ones. A lane may
+ * overdraw by one buffer and pays that back from its next credit. With limit 0 nothing is paced, only measured.
+ *
+ * The cap covers what goes through a lane: STREAM, PARALLEL, dedup and pass-through uploads, and ZERO_COPY, which
+ * falls back to STREAM while a limit is set (sendfile can't be paced). SMALL and MULTIPART are not paced; they only
+ * carry bodies of a few MB over the default connector (see UploadStrategySelector).
+ *
+ * Metrics: dservice.upload.bandwidth.active, dservice.upload.bandwidth.limit, dservice.upload.bandwidth.bytes;
+ * with per-upload-metrics also dservice.upload.bandwidth.throughput{upload,weight} (bytes/s over the last second,
+ * per running upload — one series per upload id, so off by default).
+ */
+@Component
+public class BandwidthScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(BandwidthScheduler.class);
+
+    private record Waiter(long bytes, MonoSink<Void> sink) {}
+
+    private final DserviceClientProperties props;
+    private final MeterRegistry registry;
+    private final Counter bytesCounter;
+    private final Set<Lane> lanes = new CopyOnWriteArraySet<>();
+    private final Disposable ticker;
+
+    public BandwidthScheduler(DserviceClientProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.registry = registry;
+        this.bytesCounter = Counter.builder("dservice.upload.bandwidth.bytes")
+                .baseUnit("bytes")
+                .description("Upload body bytes that went through the bandwidth scheduler")
+                .register(registry);
+        Gauge.builder("dservice.upload.bandwidth.active", lanes, Set::size)
+                .description("Uploads currently sharing the upload bandwidth")
+                .register(registry);
+        Gauge.builder("dservice.upload.bandwidth.limit", this, s -> s.limitPerSecond())
+                .baseUnit("bytes_per_second")
+                .description("Global upload cap, 0 = unlimited")
+                .register(registry);
+
+        var tick = props.getUpload().getBandwidth().getTick();
+        this.ticker = Flux.interval(tick, tick)
+                .subscribe(t -> tick(tick.toNanos()), err -> log.error("Bandwidth scheduler stopped", err));
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.dispose();
+    }
+
+    /** A lane for one upload; close it when the upload ends. weight ≤ 0 uses the default weight. */
+    public Lane open(String uploadId, int weight) {
+        int w = weight > 0 ? weight : Math.max(1, props.getUpload().getBandwidth().getDefaultWeight());
+        Lane lane = new Lane(uploadId, w);
+        lanes.add(lane);
+        return lane;
+    }
+
+    /** A cap is set: uploads that can't be paced should take a paced path instead. */
+    public boolean isLimited() {
+        return limitPerSecond() > 0;
+    }
+
+    private long limitPerSecond() {
+        return props.getUpload().getBandwidth().getLimitPerSecond().toBytes();
+    }
+
+    /** Hands out one tick of budget to the waiting lanes and refreshes the throughput gauges. */
+    private void tick(long tickNanos) {
+        long now = System.nanoTime();
+        lanes.forEach(lane -> lane.updateRate(now));
+
+        long limit = limitPerSecond();
+        List<Lane> waiting = new ArrayList<>();
+        long totalWeight = 0;
+        for (Lane lane : lanes) {
+            if (lane.isWaiting()) {
+                waiting.add(lane);
+                totalWeight += lane.weight;
+            }
+        }
+        if (waiting.isEmpty()) {
+            return;
+        }
+        double budget = limit <= 0 ? Double.MAX_VALUE : limit * (tickNanos / 1e9);
+        for (Lane lane : waiting) {
+            lane.grant(budget * lane.weight / totalWeight);   // unlimited: releases everything queued
+        }
+    }
+
+    /** One upload's share of the bandwidth. */
+    public final class Lane implements AutoCloseable {
+        private final String uploadId;
+        private final int weight;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private final Gauge throughputGauge;   // null unless per-upload-metrics
+        private double credit;                 // bytes; may go negative by one buffer
+        private long bytes;
+        private long windowStartNanos = System.nanoTime();
+        private long windowStartBytes;
+        private volatile double bytesPerSecond;
+
+        private Lane(String uploadId, int weight) {
+            this.uploadId = uploadId;
+            this.weight = weight;
+            this.throughputGauge = !props.getUpload().getBandwidth().isPerUploadMetrics() ? null
+                    : Gauge.builder("dservice.upload.bandwidth.throughput", this, l -> l.bytesPerSecond)
+                            .baseUnit("bytes_per_second")
+                            .description("Throughput of one running upload over the last second")
+                            .tag("upload", uploadId)
+                            .tag("weight", Integer.toString(weight))
+                            .register(registry);
+        }
+
+        /** Emits each buffer only once the lane has credit for it; at most one buffer is read ahead. */
+        public Flux<DataBuffer> pace(Flux<DataBuffer> body) {
+            return body.concatMap(buf -> acquire(buf.readableByteCount()).thenReturn(buf), 1);
+        }
+
+        public double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        @Override
+        public void close() {
+            lanes.remove(this);
+            if (throughputGauge != null) {
+                registry.remove(throughputGauge);
+            }
+            List<Waiter> orphans;
+            synchronized (this) {
+                orphans = new ArrayList<>(waiters);
+                waiters.clear();
+            }
+            // nobody is pacing anymore (e.g. exchange cancelled): let stragglers through rather than hang
+            orphans.forEach(w -> w.sink().success());
+        }
+
+        private Mono<Void> acquire(long n) {
+            return Mono.create(sink -> {
+                boolean now;
+                synchronized (this) {
+                    if (limitPerSecond() <= 0 || (waiters.isEmpty() && credit > 0)) {
+                        credit -= limitPerSecond() <= 0 ? 0 : n;
+                        bytes += n;
+                        now = true;
+                    } else {
+                        Waiter w = new Waiter(n, sink);
+                        waiters.add(w);
+                        sink.onCancel(() -> {
+                            synchronized (this) {
+                                waiters.remove(w);
+                            }
+                        });
+                        now = false;
+                    }
+                }
+                if (now) {
+                    bytesCounter.increment(n);
+                    sink.success();
+                }
+            });
+        }
+
+        private synchronized boolean isWaiting() {
+            return !waiters.isEmpty();
+        }
+
+        private void grant(double share) {
+            List<Waiter> ready = new ArrayList<>();
+            long granted = 0;
+            synchronized (this) {
+                credit = Math.min(credit + share, Math.max(share, 0) + 1);   // no hoarding across ticks
+                while (!waiters.isEmpty() && credit > 0) {
+                    Waiter w = waiters.poll();
+                    credit -= w.bytes();
+                    bytes += w.bytes();
+                    granted += w.bytes();
+                    ready.add(w);
+                }
+            }
+            bytesCounter.increment(granted);
+            ready.forEach(w -> w.sink().success());     // outside the lock: downstream may re-enter acquire()
+        }
+
+        private synchronized void updateRate(long now) {
+            long elapsed = now - windowStartNanos;
+            if (elapsed >= 1_000_000_000L) {
+                bytesPerSecond = (bytes - windowStartBytes) / (elapsed / 1e9);
+                windowStartNanos = now;
+                windowStartBytes = bytes;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Lane[" + uploadId + ", weight=" + weight + "]";
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package reactive.httpwebclientservice.services;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Positional FileChannel reads (pread) straight into pooled direct buffers of the adaptive size.
+ * The reads block, so demand is served on boundedElastic.
+ */
+final class ChannelFileChunkSource implements FileChunkSource {
+
+    private static final class State {
+        final FileChannel channel;
+        long position;
+        final long end;
+
+        State(FileChannel channel, long position, long end) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+        }
+    }
+
+    @Override
+    public Flux<DataBuffer> read(Path path, long offset, long length, AdaptiveChunkSizer sizer) {
+        return Flux.<DataBuffer, State>generate(
+                        () -> {
+                            FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+                            long end = length > ch.size() - offset ? ch.size() : offset + length;
+                            return new State(ch, offset, end);
+                        },
+                        (st, sink) -> {
+                            if (st.position >= st.end) {
+                                sink.complete();
+                                return st;
+                            }
+                            int size = (int) Math.min(sizer.next(), st.end - st.position);
+                            ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(size, size);
+                            try {
+                                while (buf.isWritable()) {
+                                    int n = buf.writeBytes(st.channel, st.position + buf.writerIndex(), buf.writableBytes());
+                                    if (n < 0) break;   // file shrank under us
+                                }
+                                if (!buf.isReadable()) {
+                                    buf.release();
+                                    sink.complete();
+                                    return st;
+                                }
+                                st.position += buf.readableBytes();
+                                sizer.emitted(buf.readableBytes());
+                                sink.next(LargeFileUploadService.POOLED_DIRECT.wrap(buf));
+                            } catch (IOException e) {
+                                buf.release();
+                                sink.error(e);
+                            }
+                            return st;
+                        },
+                        st -> {
+                            try {
+                                st.channel.close();
+                            } catch (IOException ignored) {
+                                // read-only channel, nothing to lose
+                            }
+                        })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,214 @@
+package reactive.httpwebclientservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactive.httpwebclientservice.DTOs.db.CreateResultDbDTO;
+import reactive.httpwebclientservice.DTOs.db.UserDbDTO;
+import reactive.httpwebclientservice.HttpClientInterface;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.exceptions.ApiException;
+import reactive.httpwebclientservice.exceptions.BadRequestException;
+import reactive.httpwebclientservice.exceptions.ConflictException;
+import reactive.httpwebclientservice.exceptions.TooManyRequestsException;
+import reactive.httpwebclientservice.utils.Correlation;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-batching of user creates (dservice.batch.create.*): creates are queued and flushed as one
+ * POST /users:batchCreate when max-items are waiting or the oldest has waited max-wait; each caller's Mono
+ * completes with its own item of the answer (answers are matched to requests by position).
+ *
+ * Backpressure: the queue is bounded (queue-capacity) and bufferTimeout only takes what the in-flight bulk calls
+ * (concurrency) can absorb, so a slow backend fills the queue and new creates get a 429 with Retry-After: 1
+ * instead of piling up in memory.
+ * Isolation: an item's non-2xx status fails only that caller (409 → ConflictException, 400 → BadRequestException,
+ * …). A failed bulk call fails its batch only — it is not replayed item by item, since it may have been applied
+ * in part. A 404/405/501 from the bulk route means the backend has none: items are then sent one by one through
+ * create() for bulk-probe-interval. A caller that cancels does not take its item back out of a batch.
+ *
+ * Metrics: dservice.batch.create.size, dservice.batch.create.queue.delay, dservice.batch.create.queued,
+ * dservice.batch.create.items{outcome=created|failed|rejected}.
+ */
+@Service
+public class CreateUserBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(CreateUserBatcher.class);
+
+    private static final String URL = "/api/v1/users:batchCreate";
+
+    /** A queued create and the caller waiting on it. */
+    private record Pending(UserDbDTO body, String corrId, long enqueuedNanos,
+                           Sinks.One<ResponseEntity<UserDbDTO>> result) {}
+
+    private final HttpClientInterface users;
+    private final DserviceClientProperties props;
+    private final Queue<Pending> queue;
+    private final Sinks.Many<Pending> sink;
+    private final DistributionSummary batchSize;
+    private final Timer queueDelay;
+    private final Counter created;
+    private final Counter failed;
+    private final Counter rejected;
+    private volatile long bulkUnsupportedUntilNanos;
+    private volatile Disposable pipeline;
+
+    public CreateUserBatcher(HttpClientInterface users, DserviceClientProperties props, MeterRegistry registry) {
+        this.users = users;
+        this.props = props;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, props.getBatch().getCreate().getQueueCapacity()));
+        this.sink = Sinks.many().unicast().onBackpressureBuffer(queue);
+        this.batchSize = DistributionSummary.builder("dservice.batch.create.size")
+                .description("Creates per bulk call")
+                .publishPercentiles(0.5, 0.95)
+                .register(registry);
+        this.queueDelay = Timer.builder("dservice.batch.create.queue.delay")
+                .description("Time a create waited before its bulk call was sent")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.created = registry.counter("dservice.batch.create.items", "outcome", "created");
+        this.failed = registry.counter("dservice.batch.create.items", "outcome", "failed");
+        this.rejected = registry.counter("dservice.batch.create.items", "outcome", "rejected");
+        Gauge.builder("dservice.batch.create.queued", queue, Queue::size)
+                .description("Creates waiting for a bulk call")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        var cfg = props.getBatch().getCreate();
+        pipeline = sink.asFlux()
+                // fair backpressure: no batch is cut until a bulk slot can take it, so waiting happens in the queue
+                .bufferTimeout(Math.max(1, cfg.getMaxItems()), cfg.getMaxWait(), true)
+                .flatMap(batch -> send(batch).onErrorResume(err -> Mono.empty()), Math.max(1, cfg.getConcurrency()))
+                .subscribe(null, err -> log.error("Create batcher stopped", err));
+        log.info("Create batcher started (max-items {}, max-wait {}, concurrency {})",
+                cfg.getMaxItems(), cfg.getMaxWait(), cfg.getConcurrency());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pipeline != null) pipeline.dispose();
+    }
+
+    public boolean isEnabled() {
+        return props.getBatch().getCreate().isEnabled() && pipeline != null;
+    }
+
+    /** Queues the create; completes when its batch is answered, or at once with 429 when the queue is full. */
+    public Mono<ResponseEntity<UserDbDTO>> submit(UserDbDTO body) {
+        return Mono.deferContextual(ctx -> {
+            String corrId = ctx.hasKey(Correlation.CTX_KEY) ? ctx.get(Correlation.CTX_KEY) : Correlation.newId();
+            Pending pending = new Pending(body, corrId, System.nanoTime(), Sinks.one());
+            Sinks.EmitResult emitted;
+            do {
+                emitted = sink.tryEmitNext(pending);
+            } while (emitted == Sinks.EmitResult.FAIL_NON_SERIALIZED);   // another caller is emitting: spin
+            if (emitted.isFailure()) {
+                rejected.increment();
+                return Mono.error(new TooManyRequestsException("Create queue full", "POST", URL, corrId, null, "1"));
+            }
+            return pending.result().asMono();
+        });
+    }
+
+    private Mono<Void> send(List<Pending> batch) {
+        long now = System.nanoTime();
+        batch.forEach(p -> queueDelay.record(now - p.enqueuedNanos(), TimeUnit.NANOSECONDS));
+        batchSize.record(batch.size());
+        if (System.nanoTime() - bulkUnsupportedUntilNanos <= 0) {
+            return oneByOne(batch);
+        }
+        return users.createAll(batch.stream().map(Pending::body).toList())
+                .defaultIfEmpty(List.of())
+                .doOnNext(results -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        Pending p = batch.get(i);
+                        if (i < results.size() && results.get(i) != null) {
+                            complete(p, results.get(i));
+                        } else {
+                            fail(p, new ApiException("Bulk create answered " + results.size() + " of "
+                                    + batch.size() + " items", 502, "POST", URL, p.corrId(), null, null) {});
+                        }
+                    }
+                })
+                .then()
+                .onErrorResume(err -> {
+                    if (bulkMissing(err)) {
+                        var interval = props.getBatch().getCreate().getBulkProbeInterval();
+                        bulkUnsupportedUntilNanos = System.nanoTime() + interval.toNanos();
+                        log.info("Backend has no bulk create ({}); sending creates one by one for {}",
+                                err.getMessage(), interval);
+                        return oneByOne(batch);
+                    }
+                    log.warn("Bulk create of {} items failed: {}", batch.size(), err.toString());
+                    batch.forEach(p -> fail(p, err));
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * No bulk API: plain creates, each under its caller's correlation id. Up to concurrency batches do this at once,
+     * so each gets an equal share of the bulkhead's max-concurrent-calls — more would be rejected outright (max-wait 0).
+     */
+    private Mono<Void> oneByOne(List<Pending> batch) {
+        int batches = Math.max(1, props.getBatch().getCreate().getConcurrency());
+        int inFlight = Math.max(1, props.getResilience().getBulkhead().getMaxConcurrentCalls() / batches);
+        return Flux.fromIterable(batch)
+                .flatMap(p -> users.create(p.body())
+                        .doOnNext(resp -> {
+                            created.increment();
+                            p.result().tryEmitValue(resp);
+                        })
+                        .switchIfEmpty(Mono.fromRunnable(() -> p.result().tryEmitEmpty()))
+                        .onErrorResume(err -> {
+                            fail(p, err);
+                            return Mono.empty();
+                        })
+                        .contextWrite(c -> c.put(Correlation.CTX_KEY, p.corrId())), inFlight)
+                .then();
+    }
+
+    private void complete(Pending p, CreateResultDbDTO result) {
+        HttpStatus status = HttpStatus.resolve(result.getStatus());
+        if (status != null && status.is2xxSuccessful()) {
+            created.increment();
+            p.result().tryEmitValue(ResponseEntity.status(status).body(result.getUser()));
+            return;
+        }
+        String error = result.getError() != null ? result.getError() : "Create failed";
+        fail(p, switch (result.getStatus()) {
+            case 400 -> new BadRequestException(error, "POST", URL, p.corrId(), error);
+            case 409 -> new ConflictException(error, "POST", URL, p.corrId(), error);
+            default -> new ApiException(error, result.getStatus(), "POST", URL, p.corrId(), error, null) {};
+        });
+    }
+
+    private void fail(Pending p, Throwable err) {
+        failed.increment();
+        p.result().tryEmitError(err);
+    }
+
+    private static boolean bulkMissing(Throwable err) {
+        return err instanceof ApiException api && api.getStatus() != null
+                && (api.getStatus() == 404 || api.getStatus() == 405 || api.getStatus() == 501);
+    }
+}
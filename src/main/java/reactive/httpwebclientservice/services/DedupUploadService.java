@@ -0,0 +1,257 @@
+package reactive.httpwebclientservice.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.exceptions.NotFoundException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Strategy F — deduplicated uploads: only bytes the backend does not have yet go over the wire.
+ *
+ * The file is cut into content-defined chunks (gear rolling hash, FastCDC style: boundaries follow the
+ * content, so an insertion only changes the chunks around it) and every chunk is SHA-256'd in the same pass.
+ * Chunk lists are cached by path+size+mtime, so an unchanged file is never hashed twice.
+ *
+ * Backend contract:
+ *   HEAD /api/v1/dedup/objects/{sha256}          2xx → whole file already stored, done (one small request)
+ *   POST /api/v1/dedup/chunks/missing            {"chunks":[sha,...]} → {"missing":[sha,...]}
+ *   PUT  /api/v1/dedup/chunks/{sha256}           body = chunk bytes
+ *   POST /api/v1/dedup/objects/{sha256}          {"name","size","chunks":[{"sha256","length"},...]} → assemble
+ */
+@Service
+public class DedupUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(DedupUploadService.class);
+
+    private static final int READ_BLOCK = 1024 * 1024;
+
+    /** Gear table of the rolling hash; fixed seed, so boundaries are stable across restarts and hosts. */
+    private static final long[] GEAR = new SplittableRandom(0x5DEECE66DL).longs(256).toArray();
+
+    public record Chunk(long offset, long length, String sha256) {}
+
+    public record FileDigest(String sha256, long size, List<Chunk> chunks) {}
+
+    private record CacheKey(String path, long size, long lastModified) {}
+
+    private record Lookup(FileDigest digest, boolean cacheHit) {}
+
+    private record Sent(long chunks, long bytes) {}
+
+    private final WebClient uploadClient;
+    private final DserviceClientProperties props;
+    private final BandwidthScheduler bandwidth;
+    private final FileChunkReader files;
+    private final Map<CacheKey, FileDigest> digestCache;
+
+    public DedupUploadService(@Qualifier("uploadWebClient") WebClient uploadClient,
+                              DserviceClientProperties props,
+                              BandwidthScheduler bandwidth,
+                              FileChunkReader files) {
+        this.uploadClient = uploadClient;
+        this.props = props;
+        this.bandwidth = bandwidth;
+        this.files = files;
+        int maxEntries = Math.max(1, props.getUpload().getDedup().getHashCacheEntries());
+        this.digestCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, FileDigest> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public Mono<Map<String, Object>> upload(Path path) {
+        if (!Files.exists(path)) {
+            return Mono.error(new IllegalArgumentException("File not found: " + path));
+        }
+        long started = System.nanoTime();
+
+        return Mono.fromCallable(() -> digest(path))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(lookup -> objectExists(lookup.digest().sha256())
+                        .flatMap(exists -> exists
+                                ? Mono.just(result(lookup, new Sent(0, 0), started))
+                                : Mono.using(() -> bandwidth.open(UUID.randomUUID().toString(), 0),
+                                            lane -> uploadMissing(path, lookup.digest(), lane),
+                                            BandwidthScheduler.Lane::close)
+                                    .flatMap(sent -> commit(path, lookup.digest())
+                                            .thenReturn(result(lookup, sent, started)))));
+    }
+
+    /** Chunk list + whole-file hash, from the cache when path, size and mtime are unchanged. */
+    private Lookup digest(Path path) throws IOException {
+        CacheKey key = new CacheKey(path.toAbsolutePath().normalize().toString(),
+                Files.size(path), Files.getLastModifiedTime(path).toMillis());
+        FileDigest hit = digestCache.get(key);
+        if (hit != null) {
+            return new Lookup(hit, true);
+        }
+        FileDigest fresh = chunk(path, props.getUpload().getDedup());
+        digestCache.put(key, fresh);
+        return new Lookup(fresh, false);
+    }
+
+    private Mono<Boolean> objectExists(String sha256) {
+        return uploadClient
+                .head()
+                .uri("/api/v1/dedup/objects/{sha256}", sha256)
+                .retrieve()
+                .toBodilessEntity()
+                .map(resp -> true)
+                .onErrorResume(NotFoundException.class, e -> Mono.just(false));
+    }
+
+    /** Asks which chunks are missing and sends each distinct one once. */
+    private Mono<Sent> uploadMissing(Path path, FileDigest digest, BandwidthScheduler.Lane lane) {
+        Map<String, Chunk> distinct = new LinkedHashMap<>();
+        digest.chunks().forEach(c -> distinct.putIfAbsent(c.sha256(), c));
+
+        AtomicLong chunksSent = new AtomicLong();
+        AtomicLong bytesSent = new AtomicLong();
+        return uploadClient
+                .post()
+                .uri("/api/v1/dedup/chunks/missing")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("chunks", distinct.keySet()))
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, List<String>>>() {})
+                .flatMapMany(resp -> Flux.fromIterable(resp.getOrDefault("missing", List.of())))
+                .mapNotNull(distinct::get)
+                .flatMap(chunk -> putChunk(path, chunk, lane)
+                                .doOnSuccess(v -> {
+                                    chunksSent.incrementAndGet();
+                                    bytesSent.addAndGet(chunk.length());
+                                }),
+                        Math.max(1, props.getUpload().getDedup().getConcurrency()))
+                .then(Mono.fromSupplier(() -> new Sent(chunksSent.get(), bytesSent.get())));
+    }
+
+    private Mono<Void> putChunk(Path path, Chunk chunk, BandwidthScheduler.Lane lane) {
+        Flux<DataBuffer> body = lane.pace(files.read(path, chunk.offset(), chunk.length()))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        return uploadClient
+                .put()
+                .uri("/api/v1/dedup/chunks/{sha256}", chunk.sha256())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(chunk.length())
+                .body(BodyInserters.fromDataBuffers(body))
+                .retrieve()
+                .toBodilessEntity()
+                .then();
+    }
+
+    private Mono<Void> commit(Path path, FileDigest digest) {
+        List<Map<String, Object>> chunks = new ArrayList<>(digest.chunks().size());
+        digest.chunks().forEach(c -> chunks.add(Map.of("sha256", c.sha256(), "length", c.length())));
+        return uploadClient
+                .post()
+                .uri("/api/v1/dedup/objects/{sha256}", digest.sha256())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of(
+                        "name", path.getFileName().toString(),
+                        "size", digest.size(),
+                        "chunks", chunks))
+                .retrieve()
+                .toBodilessEntity()
+                .then();
+    }
+
+    private static Map<String, Object> result(Lookup lookup, Sent sent, long started) {
+        FileDigest d = lookup.digest();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("sha256", d.sha256());
+        m.put("bytes", d.size());
+        m.put("chunks", d.chunks().size());
+        m.put("chunksSent", sent.chunks());
+        m.put("bytesSent", sent.bytes());
+        m.put("bytesSkipped", d.size() - sent.bytes());
+        m.put("hashCacheHit", lookup.cacheHit());
+        m.put("seconds", (System.nanoTime() - started) / 1e9);
+        return m;
+    }
+
+    /**
+     * One sequential pass over the file: content-defined boundaries + SHA-256 per chunk + SHA-256 of the file.
+     * A boundary is cut where the top log2(avg) bits of the gear hash are zero, but never before min-chunk
+     * and always at max-chunk. Blocking — runs on boundedElastic.
+     */
+    static FileDigest chunk(Path path, DserviceClientProperties.Dedup opts) throws IOException {
+        long min = opts.getMinChunk().toBytes();
+        long max = Math.max(min, opts.getMaxChunk().toBytes());
+        int bits = Long.numberOfTrailingZeros(Long.highestOneBit(Math.max(2, opts.getAvgChunk().toBytes())));
+        long mask = -1L << (64 - bits);
+
+        MessageDigest whole = sha256();
+        MessageDigest current = sha256();
+        List<Chunk> chunks = new ArrayList<>();
+        byte[] block = new byte[READ_BLOCK];
+        ByteBuffer buf = ByteBuffer.wrap(block);
+
+        long offset = 0;        // file offset of block[0]
+        long chunkStart = 0;
+        long gear = 0;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            int n;
+            while ((n = ch.read(buf.clear())) != -1) {
+                whole.update(block, 0, n);
+                int from = 0;   // first byte of the current chunk inside this block
+                for (int i = 0; i < n; i++) {
+                    gear = (gear << 1) + GEAR[block[i] & 0xff];
+                    long len = offset + i + 1 - chunkStart;
+                    if ((len >= min && (gear & mask) == 0) || len >= max) {
+                        current.update(block, from, i + 1 - from);
+                        chunks.add(new Chunk(chunkStart, len, HexFormat.of().formatHex(current.digest())));
+                        chunkStart = offset + i + 1;
+                        from = i + 1;
+                        gear = 0;
+                    }
+                }
+                current.update(block, from, n - from);
+                offset += n;
+            }
+        }
+        if (offset > chunkStart || chunks.isEmpty()) {
+            chunks.add(new Chunk(chunkStart, offset - chunkStart, HexFormat.of().formatHex(current.digest())));
+        }
+        log.debug("Chunked {}: {} bytes → {} chunks", path, offset, chunks.size());
+        return new FileDigest(HexFormat.of().formatHex(whole.digest()), offset, List.copyOf(chunks));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
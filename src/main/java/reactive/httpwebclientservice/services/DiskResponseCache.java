@@ -0,0 +1,484 @@
+package reactive.httpwebclientservice.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Second cache tier on disk (dservice.cache.disk.*): opaque values by string key, kept across restarts.
+ *
+ * Storage: append-only segment files "segment-&lt;n&gt;.dat" of segment-size bytes, each memory-mapped whole.
+ * A record is [magic][length][expiresAt][keyLen][key][valueLen][value][crc32c]; valueLen -1 is a tombstone
+ * (an invalidation, so it also holds after a restart). Where each live key's newest record sits is kept in an
+ * {@link OffHeapIndex} (direct memory, nothing per entry on the heap). On startup the segments are scanned oldest
+ * first and the index rebuilt — records past their expiry, and everything after a torn/corrupt record, are skipped.
+ *
+ * Every compaction-interval: expired entries are dropped from the index; a sealed segment with no live bytes is
+ * deleted (unless it holds tombstones that still matter), one below compaction-threshold live has its live records (and still relevant tombstones) appended to
+ * the active segment and is then deleted. Beyond max-size the oldest segment is dropped whole (never the one a
+ * compaction is still walking: it doesn't count, and goes as soon as its live records are moved).
+ *
+ * All methods block on mmap'd memory (page faults): call them off the event loop. Mappings of deleted segments
+ * are released by the GC. Metrics: dservice.cache.disk.gets{result}, .entries, .segments, .bytes, .compactions.
+ */
+@Component
+public class DiskResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskResponseCache.class);
+
+    private static final int MAGIC = 0x44435231;                 // "DCR1"
+    private static final int HEADER = 4 + 4 + 8 + 4;            // magic, length, expiresAt, keyLen
+    private static final int TOMBSTONE = -1;
+
+    private final DserviceClientProperties props;
+    private final MeterRegistry registry;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapIndex index;
+    private final Disposable compactor;
+    private Segment active;
+    private Segment compacting;     // being walked by compactInto: roll() must not drop it mid-walk
+
+    public DiskResponseCache(DserviceClientProperties props, MeterRegistry registry) throws IOException {
+        this.props = props;
+        this.registry = registry;
+        var cfg = props.getCache().getDisk();
+        this.index = new OffHeapIndex(cfg.getIndexCapacity());
+        if (!cfg.isEnabled()) {
+            this.compactor = null;
+            return;
+        }
+        Files.createDirectories(cfg.getDir());
+        recover();
+        Gauge.builder("dservice.cache.disk.entries", this, c -> c.sizeSnapshot())
+                .description("Live entries in the disk cache index")
+                .register(registry);
+        Gauge.builder("dservice.cache.disk.segments", this, c -> c.segmentCount())
+                .description("Segment files of the disk cache")
+                .register(registry);
+        Gauge.builder("dservice.cache.disk.bytes", this, c -> c.diskBytes())
+                .baseUnit("bytes")
+                .description("Bytes written into the disk cache segments (live and dead)")
+                .register(registry);
+        var interval = cfg.getCompactionInterval();
+        this.compactor = Flux.interval(interval, interval, Schedulers.boundedElastic())
+                .subscribe(t -> compact(), err -> log.error("Disk cache compaction stopped", err));
+    }
+
+    public boolean isEnabled() {
+        return compactor != null;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (compactor != null) {
+            compactor.dispose();
+        }
+        segments.values().forEach(s -> s.buffer.force());
+        for (Segment s : segments.values()) {
+            try {
+                s.channel.close();
+            } catch (IOException ignored) {
+                // mapping stays valid until GC; nothing to flush anymore
+            }
+        }
+    }
+
+    /** The value, or null when absent, expired or unreadable. */
+    public synchronized byte[] get(String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        long hash = hash(key);
+        OffHeapIndex.Location loc = index.get(hash);
+        if (loc == null || loc.expiresAtMillis() <= System.currentTimeMillis()) {
+            count("miss");
+            return null;
+        }
+        Segment segment = segments.get(loc.segment());
+        Record record = segment == null ? null : segment.read(loc.offset());
+        if (record == null || !record.key().equals(key) || record.value() == null) {
+            count("miss");     // hash collision or damaged record
+            return null;
+        }
+        count("hit");
+        return record.value();
+    }
+
+    public synchronized void put(String key, byte[] value, long expiresAtMillis) {
+        if (!isEnabled() || expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        append(key, value, expiresAtMillis);
+    }
+
+    public synchronized void remove(String key) {
+        if (!isEnabled()) {
+            return;
+        }
+        OffHeapIndex.Location loc = index.get(hash(key));
+        if (loc != null) {
+            append(key, null, loc.expiresAtMillis());   // tombstone lives as long as the record it hides
+        }
+    }
+
+    /** Removes every live key matching; reads each key back from its segment. Returns how many went. */
+    public synchronized int removeIf(Predicate<String> keyMatcher) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        List<String> matches = new ArrayList<>();
+        index.forEach((hash, loc) -> {
+            Segment segment = segments.get(loc.segment());
+            Record record = segment == null ? null : segment.read(loc.offset());
+            if (record != null && keyMatcher.test(record.key())) {
+                matches.add(record.key());
+            }
+        });
+        matches.forEach(this::remove);
+        return matches.size();
+    }
+
+    public synchronized void clear() {
+        if (!isEnabled()) {
+            return;
+        }
+        new ArrayList<>(segments.values()).forEach(this::delete);
+        index.clear();
+        active = openSegment(1);
+    }
+
+    public synchronized Map<String, Object> describe() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", isEnabled());
+        if (isEnabled()) {
+            m.put("dir", props.getCache().getDisk().getDir().toString());
+            m.put("entries", index.size());
+            m.put("indexOffHeapBytes", index.offHeapBytes());
+            m.put("segments", segments.size());
+            m.put("diskBytes", diskBytes());
+            m.put("liveBytes", segments.values().stream().mapToLong(s -> s.liveBytes).sum());
+        }
+        return m;
+    }
+
+    /** Drops expired index entries, then deletes or compacts sealed segments that are mostly dead. */
+    synchronized void compact() {
+        long now = System.currentTimeMillis();
+        List<Long> expired = new ArrayList<>();
+        index.forEach((hash, loc) -> {
+            if (loc.expiresAtMillis() <= now) expired.add(hash);
+        });
+        for (long hash : expired) {
+            OffHeapIndex.Location loc = index.remove(hash);
+            Segment segment = segments.get(loc.segment());
+            if (segment != null) segment.liveBytes -= loc.length();
+        }
+
+        double threshold = props.getCache().getDisk().getCompactionThreshold();
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == active || segments.get(segment.id) != segment) {
+                continue;       // a roll during an earlier compactInto may have dropped it already
+            }
+            // tombstones aren't live bytes, but while one may still hide a record in an older segment the segment
+            // can't just go: compactInto carries such tombstones forward, so invalidations survive a restart
+            boolean tombstonesMatter = segment.tombstonesUntilMillis > now && segments.firstKey() < segment.id;
+            if (segment.liveBytes <= 0 && !tombstonesMatter) {
+                delete(segment);
+            } else if (segment.liveBytes <= 0 || segment.liveBytes < segment.writePos * threshold) {
+                compactInto(segment, now);
+            }
+        }
+    }
+
+    // ── internals ────────────────────────────────────────────────────────────────
+
+    private record Record(int length, long expiresAtMillis, String key, byte[] value) {}
+
+    /** One mapped segment file; writePos is where the next record goes. */
+    private final class Segment {
+        final int id;
+        final Path file;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePos;
+        long liveBytes;
+        long tombstonesUntilMillis;   // latest expiry of the tombstones written here (they don't count as live)
+
+        Segment(int id, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void noteTombstone(long expiresAtMillis) {
+            tombstonesUntilMillis = Math.max(tombstonesUntilMillis, expiresAtMillis);
+        }
+
+        /** The record at offset, or null if there is none / it is torn or corrupt. */
+        Record read(int offset) {
+            if (offset + HEADER > buffer.capacity() || buffer.getInt(offset) != MAGIC) {
+                return null;
+            }
+            int length = buffer.getInt(offset + 4);
+            if (length < HEADER + 8 || offset + length > buffer.capacity()) {
+                return null;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(offset, length - 4));
+            if ((int) crc.getValue() != buffer.getInt(offset + length - 4)) {
+                return null;
+            }
+            long expiresAt = buffer.getLong(offset + 8);
+            int keyLen = buffer.getInt(offset + 16);
+            byte[] key = new byte[keyLen];
+            buffer.get(offset + HEADER, key);
+            int valueLen = buffer.getInt(offset + HEADER + keyLen);
+            byte[] value = null;
+            if (valueLen != TOMBSTONE) {
+                value = new byte[valueLen];
+                buffer.get(offset + HEADER + keyLen + 4, value);
+            }
+            return new Record(length, expiresAt, new String(key, StandardCharsets.UTF_8), value);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(props.getCache().getDisk().getDir())) {
+            files = list.filter(p -> p.getFileName().toString().matches("segment-\\d+\\.dat")).toList();
+        }
+        long now = System.currentTimeMillis();
+        for (Path file : files) {
+            int id = Integer.parseInt(file.getFileName().toString().replaceAll("\\D", ""));
+            segments.put(id, mapSegment(id, file));
+        }
+        int records = 0;
+        for (Segment segment : segments.values()) {          // oldest first: newer records win
+            int pos = 0;
+            Record record;
+            while ((record = segment.read(pos)) != null) {
+                long hash = hash(record.key());
+                if (record.value() == null) {
+                    unlink(hash);
+                    segment.noteTombstone(record.expiresAtMillis());
+                } else if (record.expiresAtMillis() <= now) {
+                    unlink(hash);
+                } else {
+                    link(hash, new OffHeapIndex.Location(segment.id, pos, record.length(), record.expiresAtMillis()));
+                }
+                pos += record.length();
+                records++;
+            }
+            segment.writePos = pos;
+        }
+        active = segments.isEmpty() ? openSegment(1) : segments.lastEntry().getValue();
+        log.info("Disk cache: {} segments, {} records scanned, {} live entries", segments.size(), records, index.size());
+    }
+
+    private void append(String key, byte[] value, long expiresAtMillis) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = HEADER + keyBytes.length + 4 + (value == null ? 0 : value.length) + 4;
+        int segmentSize = segmentSize();
+        if (length > segmentSize) {
+            log.debug("Not caching {} on disk: {} bytes exceed the segment size", key, length);
+            return;
+        }
+        if (active.writePos + length > segmentSize) {
+            roll();
+        }
+        Segment segment = active;
+        int offset = segment.writePos;
+        ByteBuffer b = segment.buffer;
+        b.putInt(offset, MAGIC);
+        b.putInt(offset + 4, length);
+        b.putLong(offset + 8, expiresAtMillis);
+        b.putInt(offset + 16, keyBytes.length);
+        b.put(offset + HEADER, keyBytes);
+        b.putInt(offset + HEADER + keyBytes.length, value == null ? TOMBSTONE : value.length);
+        if (value != null) {
+            b.put(offset + HEADER + keyBytes.length + 4, value);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(b.slice(offset, length - 4));
+        b.putInt(offset + length - 4, (int) crc.getValue());
+        segment.writePos += length;
+
+        long hash = hash(key);
+        if (value == null) {
+            unlink(hash);
+            segment.noteTombstone(expiresAtMillis);
+        } else {
+            link(hash, new OffHeapIndex.Location(segment.id, offset, length, expiresAtMillis));
+        }
+    }
+
+    /** Appends a record read from a sealed segment unchanged (compaction). */
+    private void appendRaw(Segment from, int offset, Record record) {
+        if (active.writePos + record.length() > segmentSize()) {
+            roll();
+        }
+        int to = active.writePos;
+        active.buffer.put(to, from.buffer, offset, record.length());
+        active.writePos += record.length();
+        if (record.value() != null) {
+            link(hash(record.key()),
+                    new OffHeapIndex.Location(active.id, to, record.length(), record.expiresAtMillis()));
+        } else {
+            active.noteTombstone(record.expiresAtMillis());
+        }
+    }
+
+    private void compactInto(Segment segment, long now) {
+        int pos = 0;
+        int moved = 0;
+        Record record;
+        compacting = segment;
+        try {
+            while (pos < segment.writePos && (record = segment.read(pos)) != null) {
+                if (record.value() == null) {
+                    // keep a tombstone while the record it hides could still sit in an older segment
+                    if (record.expiresAtMillis() > now && segments.firstKey() < segment.id) {
+                        appendRaw(segment, pos, record);
+                    }
+                } else {
+                    OffHeapIndex.Location loc = index.get(hash(record.key()));
+                    if (loc != null && loc.segment() == segment.id && loc.offset() == pos) {
+                        appendRaw(segment, pos, record);
+                        moved++;
+                    }
+                }
+                pos += record.length();
+            }
+        } finally {
+            compacting = null;
+        }
+        log.debug("Compacted segment {}: {} live records moved", segment.id, moved);
+        delete(segment);
+        registry.counter("dservice.cache.disk.compactions").increment();
+    }
+
+    private void link(long hash, OffHeapIndex.Location loc) {
+        OffHeapIndex.Location previous = index.put(hash, loc);
+        segments.get(loc.segment()).liveBytes += loc.length();
+        if (previous != null) {
+            Segment old = segments.get(previous.segment());
+            if (old != null) old.liveBytes -= previous.length();
+        }
+    }
+
+    private void unlink(long hash) {
+        OffHeapIndex.Location previous = index.remove(hash);
+        if (previous != null) {
+            Segment old = segments.get(previous.segment());
+            if (old != null) old.liveBytes -= previous.length();
+        }
+    }
+
+    private void roll() {
+        active.buffer.force();
+        active = openSegment(active.id + 1);
+        long maxSegments = Math.max(2, props.getCache().getDisk().getMaxSize().toBytes() / segmentSize());
+        // the segment being compacted doesn't count and isn't dropped: its live records are on their way into the
+        // active one, and it is deleted as soon as compactInto is done walking it
+        while (segments.size() - (compacting == null ? 0 : 1) > maxSegments) {
+            Segment oldest = segments.values().stream()
+                    .filter(s -> s != compacting && s != active)
+                    .findFirst().orElse(null);
+            if (oldest == null) {
+                break;
+            }
+            List<Long> dropped = new ArrayList<>();
+            index.forEach((hash, loc) -> {
+                if (loc.segment() == oldest.id) dropped.add(hash);
+            });
+            dropped.forEach(index::remove);
+            log.debug("Disk cache over max-size: dropped segment {} ({} entries)", oldest.id, dropped.size());
+            delete(oldest);
+        }
+    }
+
+    private Segment openSegment(int id) {
+        Path file = props.getCache().getDisk().getDir().resolve("segment-" + id + ".dat");
+        Segment segment = mapSegment(id, file);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment mapSegment(int id, Path file) {
+        try {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.max(channel.size(), segmentSize());
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);   // sparse: grows lazily
+            return new Segment(id, file, channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map disk cache segment " + file, e);
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.id);
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            log.warn("Could not delete disk cache segment {}: {}", segment.file, e.toString());
+        }
+    }
+
+    private int segmentSize() {
+        return (int) Math.min(props.getCache().getDisk().getSegmentSize().toBytes(), Integer.MAX_VALUE);
+    }
+
+    private synchronized int sizeSnapshot() {
+        return index.size();
+    }
+
+    private synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    private synchronized long diskBytes() {
+        return segments.values().stream().mapToLong(s -> s.writePos).sum();
+    }
+
+    private void count(String result) {
+        registry.counter("dservice.cache.disk.gets", "result", result).increment();
+    }
+
+    /** FNV-1a 64 over the UTF-8 key; never 0 (the index's empty marker). */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+}
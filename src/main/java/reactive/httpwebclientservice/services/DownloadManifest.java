@@ -0,0 +1,81 @@
+package reactive.httpwebclientservice.services;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Checkpoint of a segmented download, kept next to the target as "&lt;target&gt;.download.json" while the bytes
+ * land in "&lt;target&gt;.part". Only resumed when the remote object (size + ETag) and segment size are unchanged.
+ */
+public class DownloadManifest {
+
+    private String uri;
+    private long size;
+    private String etag;
+    private long segmentSize;
+    private TreeSet<Integer> completedSegments = new TreeSet<>();
+
+    public DownloadManifest() {
+    }
+
+    public DownloadManifest(String uri, long size, String etag, long segmentSize) {
+        this.uri = uri;
+        this.size = size;
+        this.etag = etag;
+        this.segmentSize = segmentSize;
+    }
+
+    @JsonIgnore
+    public int getTotalSegments() {
+        return (int) Math.max(1, (size + segmentSize - 1) / segmentSize);
+    }
+
+    @JsonIgnore
+    public long segmentOffset(int segment) {
+        return segment * segmentSize;
+    }
+
+    @JsonIgnore
+    public long segmentLength(int segment) {
+        return Math.min(segmentSize, size - segmentOffset(segment));
+    }
+
+    @JsonIgnore
+    public synchronized List<Integer> getPendingSegments() {
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < getTotalSegments(); i++) {
+            if (!completedSegments.contains(i)) pending.add(i);
+        }
+        return pending;
+    }
+
+    public synchronized void markCompleted(int segment) {
+        completedSegments.add(segment);
+    }
+
+    @JsonIgnore
+    public boolean matches(String uri, long size, String etag, long segmentSize) {
+        // without an ETag we can't tell a replaced object of the same size apart: don't resume then
+        return etag != null && this.uri.equals(uri) && this.size == size
+                && Objects.equals(this.etag, etag) && this.segmentSize == segmentSize;
+    }
+
+    public String getUri() { return uri; }
+    public void setUri(String uri) { this.uri = uri; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public String getEtag() { return etag; }
+    public void setEtag(String etag) { this.etag = etag; }
+
+    public long getSegmentSize() { return segmentSize; }
+    public void setSegmentSize(long segmentSize) { this.segmentSize = segmentSize; }
+
+    public synchronized TreeSet<Integer> getCompletedSegments() { return new TreeSet<>(completedSegments); }
+    public synchronized void setCompletedSegments(TreeSet<Integer> completedSegments) { this.completedSegments = completedSegments; }
+}
@@ -0,0 +1,63 @@
+package reactive.httpwebclientservice.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.config.DserviceClientProperties.ChunkSourceMode;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+
+/**
+ * Entry point for reading upload bodies from disk (dservice.upload.source.*): picks the FileChunkSource and gives
+ * every read its own AdaptiveChunkSizer. Chunk sizes are recorded in dservice.upload.chunk.size{source}.
+ */
+@Component
+public class FileChunkReader {
+
+    private final DserviceClientProperties props;
+    private final MeterRegistry registry;
+    private final FileChunkSource channelSource = new ChannelFileChunkSource();
+
+    public FileChunkReader(DserviceClientProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.registry = registry;
+    }
+
+    /** The whole file. */
+    public Flux<DataBuffer> read(Path path) {
+        return read(path, 0, Long.MAX_VALUE);
+    }
+
+    public Flux<DataBuffer> read(Path path, long offset, long length) {
+        return read(path, offset, length, props.getUpload().getSource().getMode(), newSizer());
+    }
+
+    /** Explicit source and sizer, for the benchmark. */
+    public Flux<DataBuffer> read(Path path, long offset, long length, ChunkSourceMode mode, AdaptiveChunkSizer sizer) {
+        FileChunkSource source = mode == ChunkSourceMode.MAPPED
+                ? new MappedFileChunkSource(props.getUpload().getSource().getMappedWindow().toBytes())
+                : channelSource;
+        DistributionSummary chunkSize = DistributionSummary.builder("dservice.upload.chunk.size")
+                .description("Size of the chunks upload bodies are read in")
+                .baseUnit("bytes")
+                .tag("source", mode.name())
+                .register(registry);
+        return source.read(path, offset, length, sizer)
+                .doOnNext(buf -> chunkSize.record(buf.readableByteCount()))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    public AdaptiveChunkSizer newSizer() {
+        var s = props.getUpload().getSource();
+        return new AdaptiveChunkSizer(
+                (int) s.getMinChunk().toBytes(),
+                (int) s.getInitialChunk().toBytes(),
+                (int) s.getMaxChunk().toBytes(),
+                s.getTargetChunkTime().toNanos(),
+                s.getStallTime().toNanos());
+    }
+}
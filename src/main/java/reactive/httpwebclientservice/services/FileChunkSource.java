@@ -0,0 +1,16 @@
+package reactive.httpwebclientservice.services;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+
+/**
+ * Where upload bodies come from: [offset, offset + length) of a file as a Flux of DataBuffers.
+ * A chunk is read only when downstream asks for it, with the size the sizer gives for that moment.
+ * length may run past the end of the file (e.g. Long.MAX_VALUE): reading stops at EOF.
+ */
+public interface FileChunkSource {
+
+    Flux<DataBuffer> read(Path path, long offset, long length, AdaptiveChunkSizer sizer);
+}
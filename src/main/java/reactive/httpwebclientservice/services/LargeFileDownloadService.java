@@ -0,0 +1,300 @@
+package reactive.httpwebclientservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.exceptions.ApiException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Large downloads, never aggregated in memory (the 256 KB codec limit only applies to decoded bodies; here the
+ * body stays a Flux<DataBuffer> of pooled direct buffers, written to disk as they arrive and released).
+ *
+ *  - HEAD first: size, Accept-Ranges, ETag
+ *  - ranges supported and size ≥ parallel-min → Range segments, N in flight, each written positionally into
+ *    "&lt;target&gt;.part" through one AsynchronousFileChannel (direct buffers → no copy on the way to the kernel);
+ *    If-Range with the ETag makes the server answer 200 instead of 206 when the object changed under us
+ *  - completed segments are recorded in "&lt;target&gt;.download.json"; a re-run with the same size + ETag only
+ *    fetches what is missing. At the end .part is renamed to the target.
+ *  - otherwise one GET, written sequentially
+ * {@link #stream} hands the backend body to the caller instead (Range headers of the caller are forwarded).
+ *
+ * Backend contract: GET/HEAD /api/v1/download-large-files/{name}
+ */
+@Service
+public class LargeFileDownloadService {
+
+    private static final Logger log = LoggerFactory.getLogger(LargeFileDownloadService.class);
+
+    private static final String OBJECT_URI = "/api/v1/download-large-files/{name}";
+
+    private record Probe(long size, boolean ranges, String etag) {}
+
+    /** Template + variables, so names are encoded once, by the WebClient. */
+    private record Target(String template, Map<String, ?> vars) {
+        @Override
+        public String toString() {
+            return template + vars;
+        }
+    }
+
+    private final WebClient transferClient;
+    private final ObjectMapper mapper;
+    private final DserviceClientProperties props;
+
+    public LargeFileDownloadService(@Qualifier("uploadWebClient") WebClient transferClient,
+                                    ObjectMapper mapper,
+                                    DserviceClientProperties props) {
+        this.transferClient = transferClient;
+        this.mapper = mapper;
+        this.props = props;
+    }
+
+    /**
+     * Downloads backend object {name} into file {fileName} of dservice.download.dir; re-run after a failure to
+     * resume. fileName is a plain name: the download replaces the target and deletes its .part, so callers must not
+     * be able to point it anywhere else.
+     */
+    public Mono<Map<String, Object>> download(String name, String fileName) {
+        if (fileName == null || fileName.isBlank() || fileName.equals(".") || fileName.equals("..")
+                || fileName.contains("/") || fileName.contains("\\") || fileName.indexOf('\0') >= 0) {
+            return Mono.error(new IllegalArgumentException("target must be a plain file name: " + fileName));
+        }
+        Path dir = props.getDownload().getDir().toAbsolutePath().normalize();
+        Path target = dir.resolve(fileName).normalize();
+        if (!dir.equals(target.getParent())) {
+            return Mono.error(new IllegalArgumentException("target must be a plain file name: " + fileName));
+        }
+        return Mono.fromCallable(() -> Files.createDirectories(dir))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(Mono.defer(() -> download(transferClient, OBJECT_URI, Map.of("name", name), target,
+                        props.getDownload().getConcurrency())));
+    }
+
+    /** Streams backend object {name} to the caller; Range / If-Range of the caller are forwarded as-is. */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> stream(String name, HttpHeaders inbound) {
+        return transferClient
+                .get()
+                .uri(OBJECT_URI, name)
+                .headers(h -> {
+                    copyIfPresent(inbound, h, HttpHeaders.RANGE);
+                    copyIfPresent(inbound, h, HttpHeaders.IF_RANGE);
+                })
+                .retrieve()
+                .toEntityFlux(DataBuffer.class);
+    }
+
+    /** Also used by the download benchmark, against a local stub instead of backend-service. */
+    public Mono<Map<String, Object>> download(WebClient client, String uriTemplate, Map<String, ?> uriVars,
+                                              Path target, int concurrency) {
+        Target uri = new Target(uriTemplate, uriVars);
+        long started = System.nanoTime();
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Path manifestFile = target.resolveSibling(target.getFileName() + ".download.json");
+
+        return probe(client, uri).flatMap(probe -> {
+            var opts = props.getDownload();
+            boolean segmented = probe.ranges() && probe.size() >= opts.getParallelMin().toBytes();
+
+            Mono<long[]> transfer = segmented
+                    ? Mono.fromCallable(() -> loadOrCreate(manifestFile, part, uri, probe))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(m -> segments(client, uri, part, manifestFile, m, concurrency))
+                    : single(client, uri, part).map(bytes -> new long[]{1, 0});
+
+            return transfer
+                    .flatMap(counts -> Mono.fromCallable(() -> {
+                                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                                Files.deleteIfExists(manifestFile);
+                                return counts;
+                            })
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .map(counts -> {
+                        double seconds = (System.nanoTime() - started) / 1e9;
+                        Map<String, Object> m = new LinkedHashMap<>();
+                        m.put("target", target.toString());
+                        m.put("bytes", probe.size());
+                        m.put("segmented", segmented);
+                        m.put("segments", counts[0]);
+                        m.put("resumedSegments", counts[1]);
+                        m.put("seconds", seconds);
+                        m.put("MBps", probe.size() / 1024.0 / 1024.0 / seconds);
+                        return m;
+                    });
+        });
+    }
+
+    private Mono<Probe> probe(WebClient client, Target uri) {
+        return client
+                .head()
+                .uri(uri.template(), uri.vars())
+                .retrieve()
+                .toBodilessEntity()
+                .map(resp -> {
+                    HttpHeaders h = resp.getHeaders();
+                    List<String> acceptRanges = h.getOrEmpty(HttpHeaders.ACCEPT_RANGES);
+                    boolean ranges = h.getContentLength() > 0 && acceptRanges.stream().anyMatch(v -> v.contains("bytes"));
+                    return new Probe(Math.max(0, h.getContentLength()), ranges, h.getETag());
+                });
+    }
+
+    /** Blocking: resume a matching manifest (and its .part), or start over. */
+    private DownloadManifest loadOrCreate(Path manifestFile, Path part, Target uri, Probe probe) throws IOException {
+        long segmentSize = props.getDownload().getSegmentSize().toBytes();
+        if (Files.exists(manifestFile) && Files.exists(part)) {
+            DownloadManifest existing = mapper.readValue(manifestFile.toFile(), DownloadManifest.class);
+            if (existing.matches(uri.toString(), probe.size(), probe.etag(), segmentSize)) {
+                log.info("Resuming download of {} ({} of {} segments done)", uri,
+                        existing.getCompletedSegments().size(), existing.getTotalSegments());
+                return existing;
+            }
+            log.info("Remote object {} changed since the partial download, starting over", uri);
+        }
+        Files.deleteIfExists(part);
+        DownloadManifest fresh = new DownloadManifest(uri.toString(), probe.size(), probe.etag(), segmentSize);
+        save(manifestFile, fresh);
+        return fresh;
+    }
+
+    /** Emits {segments, resumedSegments}. */
+    private Mono<long[]> segments(WebClient client, Target uri, Path part, Path manifestFile,
+                                  DownloadManifest m, int concurrency) {
+        int resumed = m.getCompletedSegments().size();
+        return Mono.using(
+                () -> AsynchronousFileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE),
+                channel -> Flux.fromIterable(m.getPendingSegments())
+                        .flatMap(segment -> segment(client, uri, channel, m, segment)
+                                        .then(Mono.fromRunnable(() -> {
+                                                    m.markCompleted(segment);
+                                                    save(manifestFile, m);
+                                                })
+                                                .subscribeOn(Schedulers.boundedElastic())),
+                                Math.max(1, concurrency))
+                        .then(Mono.fromSupplier(() -> new long[]{m.getTotalSegments(), resumed})),
+                channel -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        log.warn("Cannot close {}: {}", part, e.toString());
+                    }
+                });
+    }
+
+    private Mono<Void> segment(WebClient client, Target uri, AsynchronousFileChannel channel,
+                               DownloadManifest m, int segment) {
+        var opts = props.getDownload();
+        long start = m.segmentOffset(segment);
+        long length = m.segmentLength(segment);
+
+        return Mono.defer(() -> {
+                    AtomicLong received = new AtomicLong();
+                    return client
+                            .get()
+                            .uri(uri.template(), uri.vars())
+                            .header(HttpHeaders.RANGE, "bytes=" + start + "-" + (start + length - 1))
+                            .headers(h -> { if (m.getEtag() != null) h.set(HttpHeaders.IF_RANGE, m.getEtag()); })
+                            .retrieve()
+                            .toEntityFlux(DataBuffer.class)
+                            .flatMap(entity -> {
+                                if (entity.getStatusCode() != HttpStatus.PARTIAL_CONTENT) {
+                                    // 200 = the object changed (If-Range) or ranges were dropped: don't stitch
+                                    return entity.getBody().doOnNext(DataBufferUtils::release).take(1)
+                                            .then(Mono.error(new IllegalStateException(
+                                                    uri + " answered " + entity.getStatusCode() + " to a Range request;"
+                                                            + " re-run the download to start over")));
+                                }
+                                Flux<DataBuffer> body = entity.getBody()
+                                        .doOnNext(b -> received.addAndGet(b.readableByteCount()));
+                                return DataBufferUtils.write(body, channel, start)
+                                        .map(DataBufferUtils::release)
+                                        .then(Mono.defer(() -> received.get() == length
+                                                ? Mono.<Void>empty()
+                                                : Mono.error(new IOException("Segment " + segment + " of " + uri
+                                                        + " ended after " + received.get() + " of " + length + " bytes"))));
+                            });
+                })
+                .retryWhen(Retry.backoff(opts.getSegmentRetries(), opts.getRetryBackoff())
+                        .filter(LargeFileDownloadService::isRetryable)
+                        .doBeforeRetry(rs -> log.warn("Retrying segment {} of {} (attempt #{}): {}",
+                                segment, uri, rs.totalRetries() + 1, rs.failure().toString()))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /** No ranges (or a small object): one GET into .part from offset 0; emits the bytes written. */
+    private Mono<Long> single(WebClient client, Target uri, Path part) {
+        AtomicLong received = new AtomicLong();
+        return Mono.using(
+                () -> AsynchronousFileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING),
+                channel -> DataBufferUtils.write(
+                                client.get().uri(uri.template(), uri.vars()).retrieve().bodyToFlux(DataBuffer.class)
+                                        .doOnNext(b -> received.addAndGet(b.readableByteCount())),
+                                channel, 0)
+                        .map(DataBufferUtils::release)
+                        .then(Mono.fromSupplier(received::get)),
+                channel -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        log.warn("Cannot close {}: {}", part, e.toString());
+                    }
+                });
+    }
+
+    /**
+     * Segments finish concurrently and all checkpoint through the same .tmp file: writes are serialized on the
+     * manifest (the monitor its own methods use), so two saves never interleave or race each other's move.
+     */
+    private void save(Path manifestFile, DownloadManifest m) {
+        synchronized (m) {
+            try {
+                Path tmp = manifestFile.resolveSibling(manifestFile.getFileName() + ".tmp");
+                mapper.writeValue(tmp.toFile(), m);
+                Files.move(tmp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write download checkpoint " + manifestFile, e);
+            }
+        }
+    }
+
+    private static void copyIfPresent(HttpHeaders from, HttpHeaders to, String name) {
+        List<String> values = from.get(name);
+        if (values != null && !values.isEmpty()) to.put(name, values);
+    }
+
+    /** 4xx (except 429) and a changed object won't get better by retrying. */
+    private static boolean isRetryable(Throwable t) {
+        if (t instanceof IllegalStateException) {
+            return false;
+        }
+        if (t instanceof ApiException api && api.getStatus() != null) {
+            int s = api.getStatus();
+            return s >= 500 || s == 429;
+        }
+        return true;
+    }
+}
@@ -2,9 +2,10 @@ package reactive.httpwebclientservice.services;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.io.FileSystemResource;
+import io.netty.buffer.PooledByteBufAllocator;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -17,63 +18,201 @@ import reactive.httpwebclientservice.HttpClientInterface;
 import reactive.httpwebclientservice.config.DserviceClientProperties;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
 
 @Service
 public class LargeFileUploadService {
 
+    static final String UPLOAD_ID_HEADER = "X-Upload-Id";
+
+    // NEW: read file chunks straight into pooled (direct) Netty buffers: no heap copy, and Netty can write them as-is
+    static final NettyDataBufferFactory POOLED_DIRECT = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
     private final HttpClientInterface http;           // for small/medium convenience
     private final WebClient uploadClient;             // for huge streaming
     private final WebClient.Builder lbBuilder;        // if you need ad-hoc tweaks
     private final String base;                        // http://backend-service
+    private final DserviceClientProperties props;
+    private final StreamingCompression compression;
+    private final BandwidthScheduler bandwidth;
+    private final FileChunkReader files;
 
     public LargeFileUploadService(HttpClientInterface http,
                                   @Qualifier("uploadWebClient") WebClient uploadClient,
                                   WebClient.Builder lbBuilder,
-                                  DserviceClientProperties props) {
+                                  DserviceClientProperties props,
+                                  StreamingCompression compression,
+                                  BandwidthScheduler bandwidth,
+                                  FileChunkReader files) {
         this.http = http;
         this.uploadClient = uploadClient;
         this.lbBuilder = lbBuilder;
         this.base = "http://" + props.getServiceId();
+        this.props = props;
+        this.compression = compression;
+        this.bandwidth = bandwidth;
+        this.files = files;
     }
 
-    /** Strategy A — small files (≤ ~10 MB): simplest; uses the Http Interface with a Resource. */
+    /** Strategy A — small files (≤ ~1 MB): simplest; uses the Http Interface with a Resource. Not bandwidth-paced. */
     public Mono<ResponseEntity<Void>> uploadSmall(Path path) {
         FileSystemResource res = new FileSystemResource(path);
         return http.uploadSmallFile(res);
     }
 
-    /** Strategy B — medium files (10 MB – multi-GB): multipart/form-data, still streams from disk. */
+    /** Strategy B — medium files (up to a few MB): multipart/form-data, still streams from disk. Not bandwidth-paced. */
     public Mono<ResponseEntity<Void>> uploadMultipart(Path path) {
         FileSystemResource res = new FileSystemResource(path);
         return http.uploadMultipart(res);   // <-- use your HttpClientInterface method
     }
 
-    /** Strategy C — HUGE files (hundreds of GB → TB): pure streaming via DataBuffer Flux, chunked or content-length. */
+    /**
+     * Strategy C — HUGE files (hundreds of GB → TB): pure streaming via DataBuffer Flux, chunked or content-length.
+     * NEW: CRC32C (+ SHA-256 when dservice.upload.checksum.sha256) is computed as the chunks go out; once the
+     * backend accepted the body the digests follow in a metadata call (Reactor Netty cannot send request
+     * trailers) and are returned in the X-Checksum-* response headers.
+     * NEW: with dservice.upload.compression.codec the chunks are gzip/zstd-compressed on the way (Content-Encoding);
+     * the checksums are always those of the raw file.
+     * NEW: the bytes on the wire are paced by the BandwidthScheduler, sharing the upload bandwidth by weight.
+     */
     public Mono<ResponseEntity<Void>> uploadStreaming(Path path) throws IOException {
+        return uploadStreaming(path, 0);
+    }
+
+    public Mono<ResponseEntity<Void>> uploadStreaming(Path path, int weight) throws IOException {
         // quick sanity check to avoid 500 on missing path
         if (!Files.exists(path)) {
             return Mono.error(new IllegalArgumentException("File not found: " + path));
         }
 
-        int chunkSize = 64 * 1024; // 64 KB; tune if needed
+        // NEW: chunk size adapts to the write side (dservice.upload.source), FileChannel or mmap reads
+        String uploadId = UUID.randomUUID().toString();
+        StreamingChecksum checksum = new StreamingChecksum(props.getUpload().getChecksum().isSha256());
 
-        Flux<DataBuffer> body = DataBufferUtils
-                .read(path, new DefaultDataBufferFactory(), chunkSize)
+        Flux<DataBuffer> body = checksum
+                .tap(files.read(path))
                 .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
 
+        return Mono.using(
+                () -> bandwidth.open(uploadId, weight),
+                lane -> uploadClient
+                        .post()
+                        .uri("/api/v1/upload-large-files")         // RELATIVE uri (baseUrl already set)
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header(UPLOAD_ID_HEADER, uploadId)
+                        // omit Content-Length → Transfer-Encoding: chunked
+                        .body(compression.body(body, lane::pace))
+                        .retrieve()
+                        .toBodilessEntity(),
+                BandwidthScheduler.Lane::close)
+                .flatMap(resp -> sendChecksum(uploadId, checksum).thenReturn(withChecksumHeaders(resp, checksum)));
+    }
+
+    /**
+     * Strategy D — HUGE files over cleartext HTTP/1.1, zero-copy: the file goes to Netty as a FileRegion
+     * (sendfile), so the bytes never enter the JVM heap. Content-Length is set from the file size.
+     * Under TLS (H2) or H2C the bytes must be encrypted/framed in user space, so sendfile cannot be used;
+     * there we fall back to Strategy C, which streams through pooled direct buffers.
+     * The bytes never pass through the JVM here, so no checksum is computed on this path.
+     * NEW: sendfile can't be paced either, so while dservice.upload.bandwidth.limit-per-second is set this also
+     * falls back to Strategy C.
+     */
+    public Mono<ResponseEntity<Void>> uploadZeroCopy(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Mono.error(new IllegalArgumentException("File not found: " + path));
+        }
+        if (!isZeroCopyCapable() || bandwidth.isLimited()) {
+            return uploadStreaming(path);
+        }
+
+        // ReactorClientHttpRequest is a ZeroCopyHttpOutputMessage: a file Resource is written via sendFile()
         return uploadClient
                 .post()
-                .uri("/api/v1/upload-large-files")         // RELATIVE uri (baseUrl already set)
+                .uri("/api/v1/upload-large-files")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                // omit Content-Length → Transfer-Encoding: chunked
-                .body(BodyInserters.fromDataBuffers(body))
+                .body(BodyInserters.fromResource(new FileSystemResource(path)))
                 .retrieve()
                 .toBodilessEntity();
     }
 
+    /**
+     * Strategy G — pass-through: the caller's request body goes to the backend as it arrives, no temp file and
+     * no buffering. The inbound stream is read 64 KB at a time on boundedElastic, only when the outbound side asks
+     * for more, so a slow backend slows down the reads (and TCP slows down the caller): heap stays flat whatever the
+     * size. Content-Type / Content-Length / Content-Encoding / Content-Disposition are forwarded; without a length
+     * the upload goes out chunked. Checksums and bandwidth pacing apply as for Strategy C.
+     */
+    public Mono<ResponseEntity<Void>> uploadPassThrough(Callable<InputStream> inbound, HttpHeaders inboundHeaders, int weight) {
+        String uploadId = UUID.randomUUID().toString();
+        StreamingChecksum checksum = new StreamingChecksum(props.getUpload().getChecksum().isSha256());
+
+        Flux<DataBuffer> body = checksum
+                .tap(DataBufferUtils.readInputStream(inbound, POOLED_DIRECT, 64 * 1024)
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+
+        return Mono.using(
+                () -> bandwidth.open(uploadId, weight),
+                lane -> uploadClient
+                        .post()
+                        .uri("/api/v1/upload-large-files")
+                        .headers(h -> {
+                            h.setContentType(inboundHeaders.getContentType() != null
+                                    ? inboundHeaders.getContentType() : MediaType.APPLICATION_OCTET_STREAM);
+                            if (inboundHeaders.getContentLength() >= 0) h.setContentLength(inboundHeaders.getContentLength());
+                            copyIfPresent(inboundHeaders, h, HttpHeaders.CONTENT_ENCODING);
+                            copyIfPresent(inboundHeaders, h, HttpHeaders.CONTENT_DISPOSITION);
+                            h.set(UPLOAD_ID_HEADER, uploadId);
+                        })
+                        .body(BodyInserters.fromDataBuffers(lane.pace(body)))
+                        .retrieve()
+                        .toBodilessEntity(),
+                BandwidthScheduler.Lane::close)
+                .flatMap(resp -> sendChecksum(uploadId, checksum).thenReturn(withChecksumHeaders(resp, checksum)));
+    }
+
+    private static void copyIfPresent(HttpHeaders from, HttpHeaders to, String name) {
+        List<String> values = from.get(name);
+        if (values != null && !values.isEmpty()) to.put(name, values);
+    }
 
+    /** Final metadata call: lets the backend verify what it stored against what we read. */
+    private Mono<Void> sendChecksum(String uploadId, StreamingChecksum checksum) {
+        if (!checksum.isComplete()) {
+            return Mono.error(new IllegalStateException(
+                    "Upload " + uploadId + " was answered before the whole body was sent; no checksum"));
+        }
+        return uploadClient
+                .post()
+                .uri("/api/v1/upload-large-files/{uploadId}/checksum", uploadId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(checksum.toMap())
+                .retrieve()
+                .toBodilessEntity()
+                .then();
+    }
+
+    private static ResponseEntity<Void> withChecksumHeaders(ResponseEntity<Void> resp, StreamingChecksum checksum) {
+        return ResponseEntity.status(resp.getStatusCode())
+                .headers(h -> {
+                    h.addAll(resp.getHeaders());
+                    h.set(StreamingChecksum.CRC32C_HEADER, checksum.crc32c());
+                    if (checksum.sha256() != null) h.set(StreamingChecksum.SHA256_HEADER, checksum.sha256());
+                })
+                .build();
+    }
+
+    /** sendfile only works when the socket carries the file bytes unchanged: cleartext HTTP/1.1. */
+    boolean isZeroCopyCapable() {
+        var proto = props.getHttp().getProtocol();
+        return proto != DserviceClientProperties.Protocol.H2 && proto != DserviceClientProperties.Protocol.H2C;
+    }
 }
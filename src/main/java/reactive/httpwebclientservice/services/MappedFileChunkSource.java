@@ -0,0 +1,82 @@
+package reactive.httpwebclientservice.services;
+
+import io.netty.buffer.Unpooled;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * mmap-based source: the file is mapped window by window (mapped-window bytes at a time, so a 1 TB file doesn't
+ * need 1 TB of address space) and chunks are slices of the mapping — no read syscall, no copy into a buffer.
+ * Each slice is load()ed before it is emitted, so the page faults happen here on boundedElastic and not later
+ * on the Netty event loop that writes it. Windows are unmapped by the GC once all their slices are released.
+ */
+final class MappedFileChunkSource implements FileChunkSource {
+
+    private final long windowSize;
+
+    MappedFileChunkSource(long windowSize) {
+        this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);   // a single mapping is limited to 2 GB
+    }
+
+    private static final class State {
+        final FileChannel channel;
+        long position;
+        final long end;
+        MappedByteBuffer window;
+        long windowStart;
+
+        State(FileChannel channel, long position, long end) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+        }
+    }
+
+    @Override
+    public Flux<DataBuffer> read(Path path, long offset, long length, AdaptiveChunkSizer sizer) {
+        return Flux.<DataBuffer, State>generate(
+                        () -> {
+                            FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+                            long end = length > ch.size() - offset ? ch.size() : offset + length;
+                            return new State(ch, offset, end);
+                        },
+                        (st, sink) -> {
+                            if (st.position >= st.end) {
+                                sink.complete();
+                                return st;
+                            }
+                            try {
+                                if (st.window == null || st.position >= st.windowStart + st.window.capacity()) {
+                                    long mapLength = Math.min(windowSize, st.end - st.position);
+                                    st.window = st.channel.map(FileChannel.MapMode.READ_ONLY, st.position, mapLength);
+                                    st.windowStart = st.position;
+                                }
+                                int inWindow = (int) (st.position - st.windowStart);
+                                int size = Math.min(sizer.next(), st.window.capacity() - inWindow);
+                                MappedByteBuffer slice = st.window.slice(inWindow, size);
+                                slice.load();
+                                st.position += size;
+                                sizer.emitted(size);
+                                sink.next(LargeFileUploadService.POOLED_DIRECT.wrap(Unpooled.wrappedBuffer(slice)));
+                            } catch (IOException e) {
+                                sink.error(e);
+                            }
+                            return st;
+                        },
+                        st -> {
+                            try {
+                                st.channel.close();   // existing mappings stay valid after close
+                            } catch (IOException ignored) {
+                                // read-only channel, nothing to lose
+                            }
+                        })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,165 @@
+package reactive.httpwebclientservice.services;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Open-addressing hash table in one direct ByteBuffer: 64-bit key hash → (segment, offset, length, expiresAt).
+ * Nothing per entry on the heap, so millions of disk-cache entries cost the GC nothing. Linear probing with
+ * backward-shift deletion (no tombstones); doubles at 70% load. Hash 0 marks an empty slot, so callers never
+ * pass 0. Not thread-safe: DiskResponseCache guards it.
+ */
+final class OffHeapIndex {
+
+    // slot: hash(8) segment(4) offset(4) length(4) pad(4) expiresAt(8)
+    private static final int SLOT = 32;
+    private static final double MAX_LOAD = 0.7;
+
+    record Location(int segment, int offset, int length, long expiresAtMillis) {}
+
+    interface Visitor {
+        void visit(long hash, Location location);
+    }
+
+    private ByteBuffer slots;
+    private int capacity;
+    private int size;
+
+    OffHeapIndex(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long offHeapBytes() {
+        return (long) capacity * SLOT;
+    }
+
+    Location get(long hash) {
+        int i = find(hash);
+        return i < 0 ? null : read(i);
+    }
+
+    /** Returns the location it replaced, if any. */
+    Location put(long hash, Location location) {
+        if (size + 1 > capacity * MAX_LOAD) {
+            grow();
+        }
+        int i = home(hash);
+        while (true) {
+            long h = hashAt(i);
+            if (h == 0) {
+                write(i, hash, location);
+                size++;
+                return null;
+            }
+            if (h == hash) {
+                Location previous = read(i);
+                write(i, hash, location);
+                return previous;
+            }
+            i = (i + 1) & (capacity - 1);
+        }
+    }
+
+    Location remove(long hash) {
+        int i = find(hash);
+        if (i < 0) {
+            return null;
+        }
+        Location removed = read(i);
+        int mask = capacity - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            long h = hashAt(j);
+            if (h == 0) {
+                break;
+            }
+            int home = home(h);
+            // slot j may move into the hole at i unless its home lies cyclically in (i, j]
+            boolean stays = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+            if (!stays) {
+                copy(j, i);
+                i = j;
+            }
+        }
+        slots.putLong(i * SLOT, 0);
+        size--;
+        return removed;
+    }
+
+    /** Visits every entry; the visitor must not mutate the index. */
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < capacity; i++) {
+            long h = hashAt(i);
+            if (h != 0) {
+                visitor.visit(h, read(i));
+            }
+        }
+    }
+
+    void clear() {
+        allocate(16);
+    }
+
+    private int find(long hash) {
+        int i = home(hash);
+        while (true) {
+            long h = hashAt(i);
+            if (h == 0) return -1;
+            if (h == hash) return i;
+            i = (i + 1) & (capacity - 1);
+        }
+    }
+
+    private int home(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+
+    private long hashAt(int i) {
+        return slots.getLong(i * SLOT);
+    }
+
+    private Location read(int i) {
+        int base = i * SLOT;
+        return new Location(slots.getInt(base + 8), slots.getInt(base + 12), slots.getInt(base + 16),
+                slots.getLong(base + 24));
+    }
+
+    private void write(int i, long hash, Location l) {
+        int base = i * SLOT;
+        slots.putLong(base, hash);
+        slots.putInt(base + 8, l.segment());
+        slots.putInt(base + 12, l.offset());
+        slots.putInt(base + 16, l.length());
+        slots.putLong(base + 24, l.expiresAtMillis());
+    }
+
+    private void copy(int from, int to) {
+        for (int k = 0; k < SLOT; k += 8) {
+            slots.putLong(to * SLOT + k, slots.getLong(from * SLOT + k));
+        }
+    }
+
+    private void grow() {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        allocate(capacity << 1);
+        for (int i = 0; i < oldCapacity; i++) {
+            int base = i * SLOT;
+            long h = old.getLong(base);
+            if (h != 0) {
+                put(h, new Location(old.getInt(base + 8), old.getInt(base + 12), old.getInt(base + 16),
+                        old.getLong(base + 24)));
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        size = 0;
+        slots = ByteBuffer.allocateDirect(newCapacity * SLOT);   // zeroed: all slots empty
+    }
+}
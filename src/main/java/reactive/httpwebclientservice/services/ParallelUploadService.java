@@ -0,0 +1,230 @@
+package reactive.httpwebclientservice.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.exceptions.ApiException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Strategy E — HUGE files, ranged multi-part: the file is split into parts which are uploaded N at a time
+ * over the uploadWebClient pool. Each part is retried on its own; after every finished part the local
+ * checkpoint manifest is updated, so an interrupted upload resumes from the completed parts.
+ *
+ * Backend contract:
+ *   PUT  /api/v1/upload-parts/{uploadId}/{part}      Content-Range: bytes start-end/total, body = the range
+ *   POST /api/v1/upload-parts/{uploadId}/complete    {"path","size","partSize","parts","crc32c",["sha256"]}
+ * NEW: each part is checksummed while it streams out; the per-part digests (part → hex) are kept in the
+ * manifest and sent with "complete", so the backend can verify every part it stored.
+ */
+@Service
+public class ParallelUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelUploadService.class);
+
+    /** Live progress of one upload, as returned by the progress endpoint. */
+    public static final class Progress {
+        private final String uploadId;
+        private final int totalParts;
+        private final long totalBytes;
+        private final AtomicInteger completedParts;
+        private final AtomicLong completedBytes;
+        private volatile String state = "RUNNING";
+        private volatile String error;
+
+        Progress(UploadManifest m) {
+            this.uploadId = m.getUploadId();
+            this.totalParts = m.getTotalParts();
+            this.totalBytes = m.getSize();
+            this.completedParts = new AtomicInteger(m.getCompletedParts().size());
+            this.completedBytes = new AtomicLong(m.getCompletedParts().stream().mapToLong(m::partLength).sum());
+        }
+
+        public String getUploadId() { return uploadId; }
+        public int getTotalParts() { return totalParts; }
+        public long getTotalBytes() { return totalBytes; }
+        public int getCompletedParts() { return completedParts.get(); }
+        public long getCompletedBytes() { return completedBytes.get(); }
+        public double getPercent() { return totalBytes == 0 ? 100.0 : completedBytes.get() * 100.0 / totalBytes; }
+        public String getState() { return state; }
+        public String getError() { return error; }
+    }
+
+    private final WebClient uploadClient;
+    private final UploadCheckpointStore checkpoints;
+    private final DserviceClientProperties props;
+    private final BandwidthScheduler bandwidth;
+    private final FileChunkReader files;
+    private final Map<String, Progress> progressByPath = new ConcurrentHashMap<>();
+
+    public ParallelUploadService(@Qualifier("uploadWebClient") WebClient uploadClient,
+                                 UploadCheckpointStore checkpoints,
+                                 DserviceClientProperties props,
+                                 BandwidthScheduler bandwidth,
+                                 FileChunkReader files) {
+        this.uploadClient = uploadClient;
+        this.checkpoints = checkpoints;
+        this.props = props;
+        this.bandwidth = bandwidth;
+        this.files = files;
+    }
+
+    public Mono<Map<String, Object>> upload(Path path) {
+        return upload(path, 0);
+    }
+
+    /** weight: share of the upload bandwidth, for all parts of this upload together (≤ 0 = default). */
+    public Mono<Map<String, Object>> upload(Path path, int weight) {
+        if (!Files.exists(path)) {
+            return Mono.error(new IllegalArgumentException("File not found: " + path));
+        }
+        var opts = props.getUpload().getParallel();
+        long started = System.nanoTime();
+
+        return Mono.fromCallable(() -> checkpoints.loadOrCreate(path, opts.getPartSize().toBytes()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(manifest -> {
+                    Progress progress = new Progress(manifest);
+                    progressByPath.put(manifest.getPath(), progress);
+                    int resumedParts = progress.getCompletedParts();
+
+                    return Flux.using(
+                                    () -> bandwidth.open(manifest.getUploadId(), weight),
+                                    lane -> Flux.fromIterable(manifest.getPendingParts())
+                                            .flatMap(part -> {
+                                                        StreamingChecksum checksum = new StreamingChecksum(sha256Enabled());
+                                                        return uploadPart(manifest, path, part, checksum, lane)
+                                                                .then(checkpoint(manifest, part, checksum, progress));
+                                                    },
+                                                    Math.max(1, opts.getConcurrency())),
+                                    BandwidthScheduler.Lane::close)
+                            .then(complete(manifest))
+                            .then(Mono.fromRunnable(() -> checkpoints.delete(manifest))
+                                    .subscribeOn(Schedulers.boundedElastic()))
+                            .then(Mono.fromCallable(() -> {
+                                progress.state = "COMPLETED";
+                                Map<String, Object> result = new LinkedHashMap<>();
+                                result.put("uploadId", manifest.getUploadId());
+                                result.put("bytes", manifest.getSize());
+                                result.put("parts", manifest.getTotalParts());
+                                result.put("resumedParts", resumedParts);
+                                result.put("seconds", (System.nanoTime() - started) / 1e9);
+                                result.put("crc32c", manifest.getPartCrc32c());
+                                if (sha256Enabled()) result.put("sha256", manifest.getPartSha256());
+                                return result;
+                            }))
+                            .doOnError(e -> {
+                                progress.state = "FAILED";
+                                progress.error = e.toString();
+                                log.warn("Upload {} of {} interrupted at {}/{} parts; re-run to resume: {}",
+                                        manifest.getUploadId(), manifest.getPath(),
+                                        progress.getCompletedParts(), progress.getTotalParts(), e.toString());
+                            })
+                            // the result / error goes back to the caller; only running uploads are tracked
+                            .doFinally(s -> progressByPath.remove(manifest.getPath(), progress));
+                });
+    }
+
+    /** Progress of a running upload; empty once it has finished or failed. */
+    public Optional<Progress> progress(Path path) {
+        return Optional.ofNullable(progressByPath.get(path.toAbsolutePath().normalize().toString()));
+    }
+
+    private Mono<Void> uploadPart(UploadManifest m, Path path, int part, StreamingChecksum checksum,
+                                  BandwidthScheduler.Lane lane) {
+        var opts = props.getUpload().getParallel();
+        long offset = m.partOffset(part);
+        long length = m.partLength(part);
+
+        // Re-created on every (re)subscription, so a retry re-reads the range from disk (and restarts the checksum).
+        Flux<DataBuffer> body = lane
+                .pace(checksum.tap(files.read(path, offset, length)))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+
+        return uploadClient
+                .put()
+                .uri("/api/v1/upload-parts/{uploadId}/{part}", m.getUploadId(), part)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(length)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + offset + "-" + (offset + length - 1) + "/" + m.getSize())
+                .body(BodyInserters.fromDataBuffers(body))
+                .retrieve()
+                .toBodilessEntity()
+                .retryWhen(Retry.backoff(opts.getPartRetries(), opts.getRetryBackoff())
+                        .filter(ParallelUploadService::isRetryable)
+                        .doBeforeRetry(rs -> log.warn("Retrying part {} of upload {} (attempt #{}): {}",
+                                part, m.getUploadId(), rs.totalRetries() + 1, rs.failure().toString()))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .then();
+    }
+
+    private Mono<Void> checkpoint(UploadManifest m, int part, StreamingChecksum checksum, Progress progress) {
+        return Mono.fromRunnable(() -> {
+                    if (!checksum.isComplete() || checksum.bytes() != m.partLength(part)) {
+                        throw new IllegalStateException("Part " + part + " of upload " + m.getUploadId()
+                                + " was answered after " + checksum.bytes() + " of " + m.partLength(part) + " bytes");
+                    }
+                    m.markCompleted(part, checksum);
+                    checkpoints.save(m);
+                    progress.completedParts.incrementAndGet();
+                    progress.completedBytes.addAndGet(m.partLength(part));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private Mono<Void> complete(UploadManifest m) {
+        return uploadClient
+                .post()
+                .uri("/api/v1/upload-parts/{uploadId}/complete", m.getUploadId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(completeRequest(m))
+                .retrieve()
+                .toBodilessEntity()
+                .then();
+    }
+
+    private Map<String, Object> completeRequest(UploadManifest m) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("path", Path.of(m.getPath()).getFileName().toString());
+        body.put("size", m.getSize());
+        body.put("partSize", m.getPartSize());
+        body.put("parts", m.getTotalParts());
+        body.put("crc32c", m.getPartCrc32c());
+        if (sha256Enabled()) body.put("sha256", m.getPartSha256());
+        return body;
+    }
+
+    private boolean sha256Enabled() {
+        return props.getUpload().getChecksum().isSha256();
+    }
+
+    /** 4xx (except 429) won't get better by retrying; transport errors, 5xx and 429 might. */
+    private static boolean isRetryable(Throwable t) {
+        if (t instanceof ApiException api && api.getStatus() != null) {
+            int s = api.getStatus();
+            return s >= 500 || s == 429;
+        }
+        return true;
+    }
+}
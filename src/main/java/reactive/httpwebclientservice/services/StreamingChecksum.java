@@ -0,0 +1,111 @@
+package reactive.httpwebclientservice.services;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Checksums of an upload body, computed while the DataBuffers flow to the socket — no second read of the file.
+ * The digests read the buffers through readableByteBuffers() views, so nothing is copied out of the pooled
+ * direct memory and the reader index the encoder relies on is left untouched.
+ *
+ * State is reset on every subscription, so a retried exchange (which re-subscribes the body) starts over.
+ */
+public final class StreamingChecksum {
+
+    public static final String CRC32C_HEADER = "X-Checksum-CRC32C";
+    public static final String SHA256_HEADER = "X-Checksum-SHA256";
+
+    private final boolean sha256Enabled;
+    private CRC32C crc32c;
+    private MessageDigest sha256;
+    private long bytes;
+    private boolean complete;
+
+    public StreamingChecksum(boolean sha256Enabled) {
+        this.sha256Enabled = sha256Enabled;
+        reset();
+    }
+
+    /** Pass-through tap: emits the same buffers, updating the checksums on the way. */
+    public Flux<DataBuffer> tap(Flux<DataBuffer> body) {
+        return body
+                .doOnSubscribe(s -> reset())
+                .doOnNext(this::update)
+                .doOnComplete(this::markComplete);
+    }
+
+    /** true once the whole body went through the tap (values are final). */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized String crc32c() {
+        return String.format("%08x", crc32c.getValue());
+    }
+
+    /** Hex SHA-256, or null when disabled. Finishes a copy, so it can be read more than once. */
+    public synchronized String sha256() {
+        return sha256 == null ? null : HexFormat.of().formatHex(copyOfSha256().digest());
+    }
+
+    /** {"bytes", "crc32c", ["sha256"]} — body of the checksum metadata call and of the controller response. */
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("bytes", bytes());
+        m.put("crc32c", crc32c());
+        if (sha256Enabled) m.put("sha256", sha256());
+        return m;
+    }
+
+    private synchronized void reset() {
+        crc32c = new CRC32C();
+        sha256 = sha256Enabled ? newSha256() : null;
+        bytes = 0;
+        complete = false;
+    }
+
+    private synchronized void update(DataBuffer buffer) {
+        try (DataBuffer.ByteBufferIterator it = buffer.readableByteBuffers()) {
+            while (it.hasNext()) {
+                ByteBuffer bb = it.next();
+                if (sha256 != null) {
+                    sha256.update(bb.duplicate());
+                }
+                crc32c.update(bb);            // consumes the view's position only
+            }
+        }
+        bytes += buffer.readableByteCount();
+    }
+
+    private synchronized void markComplete() {
+        complete = true;
+    }
+
+    private MessageDigest copyOfSha256() {
+        try {
+            return (MessageDigest) sha256.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
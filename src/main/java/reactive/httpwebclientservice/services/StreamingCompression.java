@@ -0,0 +1,386 @@
+package reactive.httpwebclientservice.services;
+
+import com.github.luben.zstd.EndDirective;
+import com.github.luben.zstd.ZstdCompressCtx;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.config.DserviceClientProperties.CompressionCodec;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Optional compression stage for streamed uploads: sits between DataBufferUtils.read and the request body.
+ *
+ *  - gzip: java.util.zip.Deflater fed with the direct ByteBuffers of the pooled input (no heap copy),
+ *    gzip header/trailer written by hand; zstd: zstd-jni streaming API, direct buffer to direct buffer
+ *  - output goes into pooled direct Netty buffers of OUT_CHUNK bytes, which Netty writes as they are
+ *  - the first chunk is sniffed for magic numbers of compressed formats (gzip, zstd, zip, xz, png, jpeg, mp4…);
+ *    those are sent unchanged. Content-Encoding is only set once the first chunk has been seen, just before
+ *    the request is committed.
+ *  - dservice.upload.compression.ratio / .throughput / .bytes / .skipped are recorded per codec
+ */
+@Component
+public class StreamingCompression {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingCompression.class);
+
+    private static final int OUT_CHUNK = 64 * 1024;
+    static final int SNIFF_BYTES = 12;
+
+    private final DserviceClientProperties props;
+    private final MeterRegistry registry;
+    private final boolean zstdAvailable;
+
+    public StreamingCompression(DserviceClientProperties props, MeterRegistry registry) {
+        this.props = props;
+        this.registry = registry;
+        this.zstdAvailable = probeZstd();
+    }
+
+    /** Body inserter for the raw file chunks; compresses them unless disabled or already compressed. */
+    public BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> body(Flux<DataBuffer> raw) {
+        return body(raw, UnaryOperator.identity());
+    }
+
+    /** Same, with onWire applied to the buffers as they are written (after compression), e.g. bandwidth pacing. */
+    public BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> body(Flux<DataBuffer> raw,
+                                                                        UnaryOperator<Flux<DataBuffer>> onWire) {
+        CompressionCodec codec = effectiveCodec();
+        if (codec == CompressionCodec.NONE) {
+            return BodyInserters.fromDataBuffers(onWire.apply(raw));
+        }
+        return (message, context) -> raw
+                .switchOnFirst((first, flux) -> {
+                    if (!first.hasValue()) {
+                        return message.writeWith(onWire.apply(flux));
+                    }
+                    String format = compressedFormat(first.get());
+                    if (format != null) {
+                        log.debug("Upload body is already {}, sending it uncompressed", format);
+                        Counter.builder("dservice.upload.compression.skipped")
+                                .tag("format", format)
+                                .register(registry)
+                                .increment();
+                        return message.writeWith(onWire.apply(flux));
+                    }
+                    // headers are still writable: the request is committed when writeWith is subscribed
+                    message.getHeaders().set(HttpHeaders.CONTENT_ENCODING, token(codec));
+                    return message.writeWith(onWire.apply(encode(flux, codec)));
+                })
+                .then();
+    }
+
+    /** The configured codec, or gzip when zstd was asked for but its native library can't load. */
+    public CompressionCodec effectiveCodec() {
+        CompressionCodec codec = props.getUpload().getCompression().getCodec();
+        return codec == CompressionCodec.ZSTD && !zstdAvailable ? CompressionCodec.GZIP : codec;
+    }
+
+    private Flux<DataBuffer> encode(Flux<DataBuffer> raw, CompressionCodec codec) {
+        int level = props.getUpload().getCompression().getLevel();
+        return Flux.defer(() -> {
+                    Encoder enc = codec == CompressionCodec.ZSTD
+                            ? new ZstdEncoder(level < 0 ? 3 : level)
+                            : new GzipEncoder(level < 0 ? Deflater.DEFAULT_COMPRESSION : level);
+                    return raw
+                            .concatMapIterable(buf -> {
+                                try {
+                                    return enc.encode(buf);
+                                } finally {
+                                    DataBufferUtils.release(buf);
+                                }
+                            })
+                            .concatWith(Flux.defer(() -> {
+                                List<DataBuffer> tail = enc.finish();
+                                record(codec, enc);
+                                return Flux.fromIterable(tail);
+                            }))
+                            .doFinally(s -> enc.close());
+                })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    private void record(CompressionCodec codec, Encoder enc) {
+        String tag = token(codec);
+        if (enc.encodedBytes > 0) {
+            DistributionSummary.builder("dservice.upload.compression.ratio")
+                    .description("Raw bytes / compressed bytes per upload")
+                    .tag("encoding", tag)
+                    .register(registry)
+                    .record((double) enc.rawBytes / enc.encodedBytes);
+        }
+        if (enc.nanos > 0) {
+            DistributionSummary.builder("dservice.upload.compression.throughput")
+                    .description("Raw MB compressed per second of compression time, per upload")
+                    .baseUnit("megabytes_per_second")
+                    .tag("encoding", tag)
+                    .register(registry)
+                    .record(enc.rawBytes / 1024.0 / 1024.0 / (enc.nanos / 1e9));
+        }
+        Counter.builder("dservice.upload.compression.bytes").baseUnit("bytes")
+                .tag("encoding", tag).tag("direction", "in").register(registry).increment(enc.rawBytes);
+        Counter.builder("dservice.upload.compression.bytes").baseUnit("bytes")
+                .tag("encoding", tag).tag("direction", "out").register(registry).increment(enc.encodedBytes);
+    }
+
+    private static String token(CompressionCodec codec) {
+        return codec == CompressionCodec.ZSTD ? "zstd" : "gzip";
+    }
+
+    /** Name of the compressed/media format the chunk starts with, or null if it looks compressible. */
+    static String compressedFormat(DataBuffer first) {
+        byte[] head = new byte[Math.min(first.readableByteCount(), SNIFF_BYTES)];
+        for (int i = 0; i < head.length; i++) head[i] = first.getByte(first.readPosition() + i);
+        return compressedFormat(head);
+    }
+
+    /** Same, for the first bytes of a file (at least SNIFF_BYTES when the file is that long). */
+    static String compressedFormat(byte[] head) {
+        int n = Math.min(head.length, SNIFF_BYTES);
+        int[] b = new int[n];
+        for (int i = 0; i < n; i++) b[i] = head[i] & 0xff;
+
+        if (startsWith(b, 0x1f, 0x8b)) return "gzip";
+        if (startsWith(b, 0x28, 0xb5, 0x2f, 0xfd)) return "zstd";
+        if (startsWith(b, 0x50, 0x4b, 0x03, 0x04)) return "zip";
+        if (startsWith(b, 0xfd, 0x37, 0x7a, 0x58, 0x5a, 0x00)) return "xz";
+        if (startsWith(b, 0x42, 0x5a, 0x68)) return "bzip2";
+        if (startsWith(b, 0x37, 0x7a, 0xbc, 0xaf, 0x27, 0x1c)) return "7z";
+        if (startsWith(b, 0x04, 0x22, 0x4d, 0x18)) return "lz4";
+        if (startsWith(b, 0x52, 0x61, 0x72, 0x21)) return "rar";
+        if (startsWith(b, 0x89, 0x50, 0x4e, 0x47)) return "png";
+        if (startsWith(b, 0xff, 0xd8, 0xff)) return "jpeg";
+        if (startsWith(b, 0x47, 0x49, 0x46, 0x38)) return "gif";
+        if (startsWith(b, 0x4f, 0x67, 0x67, 0x53)) return "ogg";
+        if (n >= 8 && b[4] == 'f' && b[5] == 't' && b[6] == 'y' && b[7] == 'p') return "mp4";
+        if (n >= 12 && startsWith(b, 'R', 'I', 'F', 'F') && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P') return "webp";
+        return null;
+    }
+
+    private static boolean startsWith(int[] bytes, int... magic) {
+        if (bytes.length < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if (bytes[i] != magic[i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean probeZstd() {
+        try {
+            new ZstdCompressCtx().close();
+            return true;
+        } catch (Throwable t) {   // NoClassDefFoundError / UnsatisfiedLinkError from the native loader
+            log.warn("zstd not available ({}), ZSTD uploads will use gzip", t.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Turns input buffers into full OUT_CHUNK output buffers; the last, partial one is emitted by finish().
+     * One instance per subscription, driven serially by concatMapIterable — but a cancel runs close() on whatever
+     * thread cancelled (the Netty event loop) while encode() may be running on boundedElastic. encode/finish/close
+     * therefore hold the encoder's lock, and once closed encode/finish produce nothing, so the native codec and the
+     * pooled buffers are never freed under a running call nor used afterwards.
+     */
+    private abstract static class Encoder implements AutoCloseable {
+        private final List<DataBuffer> ready = new ArrayList<>();
+        private ByteBuf out;
+        long rawBytes;
+        long encodedBytes;
+        long nanos;
+        private boolean closed;
+
+        final synchronized List<DataBuffer> encode(DataBuffer in) {
+            if (closed) {
+                return List.of();
+            }
+            long start = System.nanoTime();
+            try (DataBuffer.ByteBufferIterator it = in.readableByteBuffers()) {
+                while (it.hasNext()) {
+                    ByteBuffer bb = it.next();
+                    rawBytes += bb.remaining();
+                    compress(bb);
+                }
+            }
+            nanos += System.nanoTime() - start;
+            return drain();
+        }
+
+        final synchronized List<DataBuffer> finish() {
+            if (closed) {
+                return List.of();
+            }
+            long start = System.nanoTime();
+            end();
+            emit();
+            nanos += System.nanoTime() - start;
+            return drain();
+        }
+
+        abstract void compress(ByteBuffer in);
+
+        abstract void end();
+
+        abstract void closeCodec();
+
+        /** Writable NIO view over the free space of the current output buffer. */
+        final ByteBuffer outView() {
+            if (out == null) {
+                out = PooledByteBufAllocator.DEFAULT.directBuffer(OUT_CHUNK, OUT_CHUNK);
+            }
+            return out.nioBuffer(out.writerIndex(), out.writableBytes());
+        }
+
+        /** n bytes were written into the last outView(). */
+        final void produced(int n) {
+            out.writerIndex(out.writerIndex() + n);
+            encodedBytes += n;
+            if (!out.isWritable()) emit();
+        }
+
+        final void emit() {
+            if (out == null) return;
+            if (out.isReadable()) {
+                ready.add(LargeFileUploadService.POOLED_DIRECT.wrap(out));
+            } else {
+                out.release();
+            }
+            out = null;
+        }
+
+        private List<DataBuffer> drain() {
+            List<DataBuffer> batch = List.copyOf(ready);
+            ready.clear();
+            return batch;
+        }
+
+        @Override
+        public final synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (out != null) {
+                out.release();
+                out = null;
+            }
+            ready.forEach(DataBufferUtils::release);
+            ready.clear();
+            closeCodec();
+        }
+    }
+
+    /** RFC 1952 framing around raw deflate. */
+    private static final class GzipEncoder extends Encoder {
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+
+        GzipEncoder(int level) {
+            this.deflater = new Deflater(level, true);
+            outView().put(HEADER);
+            produced(HEADER.length);
+        }
+
+        @Override
+        void compress(ByteBuffer in) {
+            crc.update(in.duplicate());
+            deflater.setInput(in);
+            while (!deflater.needsInput()) {
+                produced(deflater.deflate(outView()));
+            }
+        }
+
+        @Override
+        void end() {
+            deflater.finish();
+            while (!deflater.finished()) {
+                produced(deflater.deflate(outView()));
+            }
+            ByteBuffer view = outView();
+            if (view.remaining() < 8) {   // trailer doesn't fit: ship this buffer, start a new one
+                emit();
+                view = outView();
+            }
+            view.order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt((int) crc.getValue())
+                    .putInt((int) rawBytes);       // ISIZE: input size mod 2^32
+            produced(8);
+        }
+
+        @Override
+        void closeCodec() {
+            deflater.end();
+        }
+    }
+
+    private static final class ZstdEncoder extends Encoder {
+        private static final ByteBuffer EMPTY = ByteBuffer.allocateDirect(0);
+
+        private final ZstdCompressCtx ctx;
+        private ByteBuffer staging;   // only for heap input, zstd-jni's stream API needs direct buffers
+
+        ZstdEncoder(int level) {
+            this.ctx = new ZstdCompressCtx();
+            ctx.setLevel(level);
+            ctx.setChecksum(true);
+        }
+
+        @Override
+        void compress(ByteBuffer in) {
+            ByteBuffer src = in.isDirect() ? in : stage(in);
+            while (src.hasRemaining()) {
+                ByteBuffer view = outView();
+                int before = view.position();
+                ctx.compressDirectByteBufferStream(view, src, EndDirective.CONTINUE);
+                produced(view.position() - before);
+            }
+        }
+
+        @Override
+        void end() {
+            boolean flushed;
+            do {
+                ByteBuffer view = outView();
+                int before = view.position();
+                flushed = ctx.compressDirectByteBufferStream(view, EMPTY, EndDirective.END);
+                produced(view.position() - before);
+            } while (!flushed);
+        }
+
+        @Override
+        void closeCodec() {
+            ctx.close();
+        }
+
+        private ByteBuffer stage(ByteBuffer heap) {
+            if (staging == null || staging.capacity() < heap.remaining()) {
+                staging = ByteBuffer.allocateDirect(Math.max(OUT_CHUNK, heap.remaining()));
+            }
+            staging.clear();
+            staging.put(heap).flip();
+            return staging;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package reactive.httpwebclientservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Local checkpoint manifests for ranged uploads: one JSON file per source file (keyed by its absolute path)
+ * in dservice.upload.parallel.checkpoint-dir. Writes go to a temp file + atomic move, so a crash never
+ * leaves a half-written manifest behind. All methods do blocking file I/O — call them on boundedElastic.
+ */
+@Component
+public class UploadCheckpointStore {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadCheckpointStore.class);
+
+    private final ObjectMapper mapper;
+    private final DserviceClientProperties props;
+
+    public UploadCheckpointStore(ObjectMapper mapper, DserviceClientProperties props) {
+        this.mapper = mapper;
+        this.props = props;
+    }
+
+    /** Resume the manifest of this file if it still matches, otherwise start a new upload. */
+    public UploadManifest loadOrCreate(Path file, long partSize) throws IOException {
+        String path = file.toAbsolutePath().normalize().toString();
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+        Path manifestFile = manifestFile(path);
+        if (Files.exists(manifestFile)) {
+            UploadManifest existing = mapper.readValue(manifestFile.toFile(), UploadManifest.class);
+            if (existing.matches(path, size, lastModified, partSize)) {
+                log.info("Resuming upload {} of {} ({} of {} parts done)", existing.getUploadId(), path,
+                        existing.getCompletedParts().size(), existing.getTotalParts());
+                return existing;
+            }
+            log.info("Checkpoint for {} is stale (file or part size changed), starting over", path);
+        }
+        UploadManifest fresh = new UploadManifest(UUID.randomUUID().toString(), path, size, lastModified, partSize);
+        save(fresh);
+        return fresh;
+    }
+
+    /** Parts finish concurrently: saves of one manifest are serialized, as they all go through one .tmp file. */
+    public void save(UploadManifest manifest) {
+        synchronized (manifest) {
+            try {
+                Path target = manifestFile(manifest.getPath());
+                Files.createDirectories(target.getParent());
+                Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+                mapper.writeValue(tmp.toFile(), manifest);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write upload checkpoint for " + manifest.getPath(), e);
+            }
+        }
+    }
+
+    public void delete(UploadManifest manifest) {
+        try {
+            Files.deleteIfExists(manifestFile(manifest.getPath()));
+        } catch (IOException e) {
+            log.warn("Cannot delete upload checkpoint for {}: {}", manifest.getPath(), e.toString());
+        }
+    }
+
+    private Path manifestFile(String absolutePath) {
+        return props.getUpload().getParallel().getCheckpointDir().resolve(sha256(absolutePath) + ".json");
+    }
+
+    private static String sha256(String s) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
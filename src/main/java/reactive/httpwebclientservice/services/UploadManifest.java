@@ -0,0 +1,96 @@
+package reactive.httpwebclientservice.services;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Checkpoint of a ranged multi-part upload, persisted as JSON by UploadCheckpointStore.
+ * A manifest is only resumed when path, size, mtime and part size still match the file on disk.
+ */
+public class UploadManifest {
+
+    private String uploadId;
+    private String path;
+    private long size;
+    private long lastModified;
+    private long partSize;
+    private TreeSet<Integer> completedParts = new TreeSet<>();
+    private TreeMap<Integer, String> partCrc32c = new TreeMap<>();   // NEW: computed while each part streamed out
+    private TreeMap<Integer, String> partSha256 = new TreeMap<>();
+
+    public UploadManifest() {
+    }
+
+    public UploadManifest(String uploadId, String path, long size, long lastModified, long partSize) {
+        this.uploadId = uploadId;
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.partSize = partSize;
+    }
+
+    @JsonIgnore
+    public int getTotalParts() {
+        return (int) Math.max(1, (size + partSize - 1) / partSize);
+    }
+
+    @JsonIgnore
+    public long partOffset(int part) {
+        return part * partSize;
+    }
+
+    @JsonIgnore
+    public long partLength(int part) {
+        return Math.min(partSize, size - partOffset(part));
+    }
+
+    @JsonIgnore
+    public synchronized List<Integer> getPendingParts() {
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < getTotalParts(); i++) {
+            if (!completedParts.contains(i)) pending.add(i);
+        }
+        return pending;
+    }
+
+    public synchronized void markCompleted(int part, StreamingChecksum checksum) {
+        completedParts.add(part);
+        partCrc32c.put(part, checksum.crc32c());
+        String sha = checksum.sha256();
+        if (sha != null) partSha256.put(part, sha);
+    }
+
+    @JsonIgnore
+    public synchronized boolean matches(String path, long size, long lastModified, long partSize) {
+        return this.path.equals(path) && this.size == size
+                && this.lastModified == lastModified && this.partSize == partSize;
+    }
+
+    public String getUploadId() { return uploadId; }
+    public void setUploadId(String uploadId) { this.uploadId = uploadId; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public long getLastModified() { return lastModified; }
+    public void setLastModified(long lastModified) { this.lastModified = lastModified; }
+
+    public long getPartSize() { return partSize; }
+    public void setPartSize(long partSize) { this.partSize = partSize; }
+
+    public synchronized TreeSet<Integer> getCompletedParts() { return new TreeSet<>(completedParts); }
+    public synchronized void setCompletedParts(TreeSet<Integer> completedParts) { this.completedParts = completedParts; }
+
+    public synchronized TreeMap<Integer, String> getPartCrc32c() { return new TreeMap<>(partCrc32c); }
+    public synchronized void setPartCrc32c(TreeMap<Integer, String> partCrc32c) { this.partCrc32c = partCrc32c; }
+
+    public synchronized TreeMap<Integer, String> getPartSha256() { return new TreeMap<>(partSha256); }
+    public synchronized void setPartSha256(TreeMap<Integer, String> partSha256) { this.partSha256 = partSha256; }
+}
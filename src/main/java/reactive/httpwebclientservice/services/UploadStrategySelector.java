@@ -0,0 +1,177 @@
+package reactive.httpwebclientservice.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactive.httpwebclientservice.config.ApplicationBeanConfiguration;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.config.DserviceClientProperties.CompressionCodec;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One upload entry point that picks the strategy itself (POST /proxy/upload-auto).
+ *
+ *  - size ≤ small-max      → SMALL      HttpInterface + Resource, default connector
+ *  - size ≤ multipart-max  → MULTIPART  HttpInterface multipart, default connector
+ *  - size ≥ parallel-min   → PARALLEL   ranged parts, upload connector
+ *  - otherwise             → STREAM when the content is compressible and compression is on (sendfile can't
+ *                            compress), sendfile is impossible (H2/H2C) or a bandwidth cap is set (sendfile
+ *                            can't be paced), else ZERO_COPY — upload connector
+ * The default connector has the short timeouts meant for API calls (30s read-idle, 10s write-idle, 100s response),
+ * and the backend answers nothing while a body is still coming in: an upload there has to be done in seconds, so
+ * small-max / multipart-max are capped at DEFAULT_CONNECTOR_MAX whatever is configured, and anything bigger goes
+ * to the upload connector. Its pool also serves the regular traffic: when it already has pending-acquires-pressure
+ * acquires waiting, SMALL/MULTIPART go to STREAM on the upload connector instead.
+ *
+ * Every upload is timed in dservice.upload.strategy{strategy,reason,outcome}.
+ */
+@Service
+public class UploadStrategySelector {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadStrategySelector.class);
+
+    private static final String PENDING = "reactor.netty.connection.provider.pending.connections";
+
+    public static final String STRATEGY_HEADER = "X-Upload-Strategy";
+
+    /** Largest body sent over the default connector: ~8s even at 1 MB/s, well inside its 30s read-idle timeout. */
+    public static final long DEFAULT_CONNECTOR_MAX = DataSize.ofMegabytes(8).toBytes();
+
+    public enum Strategy { SMALL, MULTIPART, STREAM, ZERO_COPY, PARALLEL }
+
+    public record Decision(Strategy strategy, String reason, long size, String contentType) {}
+
+    private final LargeFileUploadService uploads;
+    private final ParallelUploadService parallel;
+    private final StreamingCompression compression;
+    private final DserviceClientProperties props;
+    private final MeterRegistry registry;
+
+    public UploadStrategySelector(LargeFileUploadService uploads,
+                                  ParallelUploadService parallel,
+                                  StreamingCompression compression,
+                                  DserviceClientProperties props,
+                                  MeterRegistry registry) {
+        this.uploads = uploads;
+        this.parallel = parallel;
+        this.compression = compression;
+        this.props = props;
+        this.registry = registry;
+    }
+
+    /** Decides, uploads, and answers with the X-Upload-Strategy header (body only for PARALLEL). */
+    public Mono<ResponseEntity<Object>> upload(Path path) {
+        if (!Files.exists(path)) {
+            return Mono.error(new IllegalArgumentException("File not found: " + path));
+        }
+        return Mono.fromCallable(() -> decide(path))
+                .subscribeOn(Schedulers.boundedElastic())   // probeContentType + sniffing read the file
+                .flatMap(decision -> {
+                    log.debug("Upload of {} → {} ({})", path, decision.strategy(), decision.reason());
+                    Timer.Sample sample = Timer.start(registry);
+                    return execute(decision.strategy(), path)
+                            .map(resp -> ResponseEntity.status(resp.getStatusCode())
+                                    .headers(resp.getHeaders())
+                                    .header(STRATEGY_HEADER, decision.strategy().name())
+                                    .body(resp.getBody()))
+                            .doOnSuccess(r -> stop(sample, decision, "success"))
+                            .doOnError(e -> stop(sample, decision, "error"));
+                });
+    }
+
+    /** Blocking (reads the first bytes of the file): call on boundedElastic. */
+    public Decision decide(Path path) throws IOException {
+        var auto = props.getUpload().getAuto();
+        long size = Files.size(path);
+        String contentType = Files.probeContentType(path);
+        boolean pressure = defaultPoolPending() >= auto.getPendingAcquiresPressure();
+
+        long smallMax = Math.min(auto.getSmallMax().toBytes(), DEFAULT_CONNECTOR_MAX);
+        long multipartMax = Math.min(auto.getMultipartMax().toBytes(), DEFAULT_CONNECTOR_MAX);
+
+        if (size <= smallMax) {
+            return pressure
+                    ? new Decision(Strategy.STREAM, "small, default pool under pressure", size, contentType)
+                    : new Decision(Strategy.SMALL, "small", size, contentType);
+        }
+        if (size <= multipartMax) {
+            return pressure
+                    ? new Decision(Strategy.STREAM, "medium, default pool under pressure", size, contentType)
+                    : new Decision(Strategy.MULTIPART, "medium", size, contentType);
+        }
+        if (size >= auto.getParallelMin().toBytes()) {
+            return new Decision(Strategy.PARALLEL, "huge", size, contentType);
+        }
+        if (!uploads.isZeroCopyCapable()) {
+            return new Decision(Strategy.STREAM, "large, sendfile impossible over " + props.getHttp().getProtocol(),
+                    size, contentType);
+        }
+        if (props.getUpload().getBandwidth().getLimitPerSecond().toBytes() > 0) {
+            return new Decision(Strategy.STREAM, "large, bandwidth cap set", size, contentType);
+        }
+        if (compression.effectiveCodec() != CompressionCodec.NONE && isCompressible(path, contentType)) {
+            return new Decision(Strategy.STREAM, "large, compressible", size, contentType);
+        }
+        return new Decision(Strategy.ZERO_COPY, "large", size, contentType);
+    }
+
+    private Mono<ResponseEntity<Object>> execute(Strategy strategy, Path path) {
+        return Mono.defer(() -> {
+            try {
+                Mono<? extends ResponseEntity<?>> result = switch (strategy) {
+                    case SMALL -> uploads.uploadSmall(path);
+                    case MULTIPART -> uploads.uploadMultipart(path);
+                    case STREAM -> uploads.uploadStreaming(path);
+                    case ZERO_COPY -> uploads.uploadZeroCopy(path);
+                    case PARALLEL -> parallel.upload(path).map(ResponseEntity::ok);
+                };
+                return result.map(r -> ResponseEntity.status(r.getStatusCode()).headers(r.getHeaders()).body((Object) r.getBody()));
+            } catch (IOException e) {
+                return Mono.error(e);
+            }
+        });
+    }
+
+    /** Not already compressed (magic numbers) and not a known binary type. */
+    private static boolean isCompressible(Path path, String contentType) throws IOException {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(path)) {
+            head = in.readNBytes(StreamingCompression.SNIFF_BYTES);
+        }
+        if (StreamingCompression.compressedFormat(head) != null) {
+            return false;
+        }
+        if (contentType == null) {
+            return true;   // unknown extension (logs, dumps…): worth a try, the ratio metric will tell
+        }
+        return contentType.startsWith("text/")
+                || contentType.contains("json") || contentType.contains("xml")
+                || contentType.contains("csv") || contentType.contains("yaml")
+                || contentType.contains("javascript") || contentType.contains("sql");
+    }
+
+    private double defaultPoolPending() {
+        return registry.find(PENDING).tag("name", ApplicationBeanConfiguration.DEFAULT_POOL).gauges().stream()
+                .mapToDouble(Gauge::value).sum();
+    }
+
+    private void stop(Timer.Sample sample, Decision decision, String outcome) {
+        sample.stop(Timer.builder("dservice.upload.strategy")
+                .description("Uploads by automatically chosen strategy")
+                .tag("strategy", decision.strategy().name())
+                .tag("reason", decision.reason())
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+}
@@ -0,0 +1,106 @@
+package reactive.httpwebclientservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Scatter-gather for GET /proxy/user-aggregate/{id} (dservice.composite.*): the user and user-with-data lookups
+ * are subscribed together (Mono.zip) under one deadline, so the caller waits max(leg), not the sum.
+ *
+ * A leg never fails the aggregate: each resolves to a part with its own status — 200 + body, the mapped upstream
+ * error, or 504 when the shared deadline ran out first (the leg is then cancelled, which cancels its exchange).
+ * "complete" says whether every part is a 200. Legs go through UserLookupService, so cached parts cost nothing.
+ *
+ * Metrics: dservice.composite.latency{complete}, dservice.composite.parts{part,status}.
+ */
+@Service
+public class UserAggregateService {
+
+    private final UserLookupService lookups;
+    private final DserviceClientProperties props;
+    private final MeterRegistry registry;
+
+    public UserAggregateService(UserLookupService lookups, DserviceClientProperties props, MeterRegistry registry) {
+        this.lookups = lookups;
+        this.props = props;
+        this.registry = registry;
+    }
+
+    /** @param deadline requested budget, or null for the default; capped at max-deadline */
+    public Mono<Map<String, Object>> aggregate(Long id, Map<String, String> headers, Duration deadline) {
+        var cfg = props.getComposite();
+        Duration budget = deadline == null ? cfg.getDeadline()
+                : deadline.compareTo(cfg.getMaxDeadline()) > 0 ? cfg.getMaxDeadline() : deadline;
+        String apiVersion = headers.entrySet().stream()
+                .filter(e -> e.getKey().equalsIgnoreCase("X-API-Version"))
+                .map(Map.Entry::getValue)
+                .findFirst().orElse(null);
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            // both legs are subscribed at the same instant, so one timeout each is one shared deadline
+            return Mono.zip(
+                            leg("user", lookups.getById(id, apiVersion), budget, start),
+                            leg("data", lookups.getWithData(id, headers), budget, start))
+                    .map(parts -> {
+                        boolean complete = Integer.valueOf(200).equals(parts.getT1().get("status"))
+                                && Integer.valueOf(200).equals(parts.getT2().get("status"));
+                        Timer.builder("dservice.composite.latency")
+                                .description("GET /proxy/user-aggregate, by whether every part succeeded")
+                                .tag("complete", String.valueOf(complete))
+                                .register(registry)
+                                .record(Duration.ofNanos(System.nanoTime() - start));
+                        Map<String, Object> m = new LinkedHashMap<>();
+                        m.put("id", id);
+                        m.put("complete", complete);
+                        m.put("deadlineMs", budget.toMillis());
+                        m.put("user", parts.getT1());
+                        m.put("data", parts.getT2());
+                        return m;
+                    });
+        });
+    }
+
+    private Mono<Map<String, Object>> leg(String name, Mono<? extends ResponseEntity<?>> call,
+                                          Duration budget, long start) {
+        return call
+                .timeout(budget)
+                .map(resp -> {
+                    Map<String, Object> m = part(resp.getStatusCode().value());
+                    m.put("body", resp.getBody());
+                    return m;
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> part(204)))
+                .onErrorResume(err -> {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    if (err instanceof TimeoutException) {
+                        m.put("status", 504);
+                        m.put("error", "Deadline of " + budget.toMillis() + "ms exceeded");
+                    } else {
+                        UserBatchService.putFailure(m, err);
+                    }
+                    return Mono.just(m);
+                })
+                .map(m -> {
+                    m.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+                    registry.counter("dservice.composite.parts", "part", name,
+                            "status", String.valueOf(m.get("status"))).increment();
+                    return m;
+                });
+    }
+
+    private static Map<String, Object> part(int status) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("status", status);
+        return m;
+    }
+}
@@ -0,0 +1,214 @@
+package reactive.httpwebclientservice.services;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactive.httpwebclientservice.DTOs.db.UserDTO;
+import reactive.httpwebclientservice.HttpClientInterface;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.exceptions.ApiException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Many user lookups in one proxy call (POST /proxy/users:batchGet, dservice.batch.lookup.*).
+ *
+ * Ids are deduped (first occurrence wins the position); the result has one item per distinct id, in that order,
+ * each with its own status: 200 + user, or the error the single lookup would have produced (status, message,
+ * correlation id). One failing id never fails the batch.
+ *
+ * Bulk first: when enabled, ids go to the backend's POST /users:batchGet in chunks of bulk-max-ids; ids it
+ * doesn't return are reported as 404. A 404/405/501 from that route means the backend has no bulk API — that is
+ * remembered for bulk-probe-interval and the call falls back at once; any other bulk failure falls back for this
+ * call only. Fan-out: UserLookupService.getById per id (so the response and negative caches apply), at most
+ * concurrency in flight, flatMapSequential so order is kept without waiting for stragglers to start the rest.
+ * Every getById takes a permit of the shared client-side rate limiter (which waits at most its timeout), so the
+ * fan-out starts ids no faster than limit-for-period per limit-refresh-period — otherwise most of a big batch
+ * would come back as 429s. A batch that can't be started within fan-out-budget at that pace is refused
+ * ({@link #fanOutMaxIds}); when bulk fails mid-call for such a batch, its ids are reported as 503.
+ *
+ * Metrics: dservice.batch.lookups{mode=bulk|fan-out}, dservice.batch.lookup.ids{status}.
+ */
+@Service
+public class UserBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserBatchService.class);
+
+    private final HttpClientInterface users;
+    private final UserLookupService lookups;
+    private final DserviceClientProperties props;
+    private final MeterRegistry registry;
+    private volatile long bulkUnsupportedUntilNanos;
+
+    public UserBatchService(HttpClientInterface users, UserLookupService lookups,
+                            DserviceClientProperties props, MeterRegistry registry) {
+        this.users = users;
+        this.lookups = lookups;
+        this.props = props;
+        this.registry = registry;
+    }
+
+    /** Distinct ids in first-seen order; nulls dropped. */
+    public static List<Long> distinct(List<Long> ids) {
+        return new ArrayList<>(ids.stream().filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+    }
+
+    /** One result map per id, same order as {@code ids} (already distinct, see {@link #distinct}). */
+    public Mono<Map<String, Object>> getByIds(List<Long> ids, String apiVersion) {
+        var cfg = props.getBatch().getLookup();
+        Mono<Map<String, Object>> fanOut = Mono.defer(() -> fanOut(ids, apiVersion));
+        if (!bulkAvailable() || ids.isEmpty()) {
+            return fanOut;
+        }
+        return bulk(ids, apiVersion)
+                .onErrorResume(err -> {
+                    if (bulkMissing(err)) {
+                        bulkUnsupportedUntilNanos = System.nanoTime() + cfg.getBulkProbeInterval().toNanos();
+                        log.info("Backend has no bulk user lookup ({}); fanning out for {}",
+                                err.getMessage(), cfg.getBulkProbeInterval());
+                    } else {
+                        log.warn("Bulk user lookup failed, fanning out this batch: {}", err.toString());
+                    }
+                    return fanOut;
+                });
+    }
+
+    /** Bulk enabled and not recently found missing. */
+    public boolean bulkAvailable() {
+        return props.getBatch().getLookup().isBulkEnabled() && System.nanoTime() - bulkUnsupportedUntilNanos > 0;
+    }
+
+    private Mono<Map<String, Object>> bulk(List<Long> ids, String apiVersion) {
+        var cfg = props.getBatch().getLookup();
+        int chunk = Math.max(1, cfg.getBulkMaxIds());
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += chunk) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + chunk)));
+        }
+        return Flux.fromIterable(chunks)
+                .flatMapSequential(part -> users.getByIds(part, apiVersion)
+                        .defaultIfEmpty(List.of())
+                        .map(found -> {
+                            Map<Long, UserDTO> byId = found.stream()
+                                    .filter(u -> u.getId() != null)
+                                    .collect(Collectors.toMap(UserDTO::getId, Function.identity(), (a, b) -> a));
+                            return part.stream()
+                                    .map(id -> byId.containsKey(id) ? found(id, byId.get(id)) : missing(id))
+                                    .toList();
+                        }), Math.max(1, cfg.getBulkConcurrency()))
+                .flatMapIterable(Function.identity())
+                .collectList()
+                .map(results -> response("bulk", results));
+    }
+
+    /** Most ids a fan-out can start within fan-out-budget, at the rate limiter's pace. */
+    public int fanOutMaxIds() {
+        long spacing = Math.max(1, fanOutSpacing().toNanos());
+        return (int) Math.min(Integer.MAX_VALUE, props.getBatch().getLookup().getFanOutBudget().toNanos() / spacing + 1);
+    }
+
+    private Duration fanOutSpacing() {
+        var limiter = props.getResilience().getRateLimiter();
+        return limiter.getLimitRefreshPeriod().dividedBy(Math.max(1, limiter.getLimitForPeriod()));
+    }
+
+    private Mono<Map<String, Object>> fanOut(List<Long> ids, String apiVersion) {
+        int concurrency = Math.max(1, props.getBatch().getLookup().getConcurrency());
+        if (ids.size() > fanOutMaxIds()) {
+            log.warn("Batch of {} ids can't fan out within {} at the rate limit; failing it", ids.size(),
+                    props.getBatch().getLookup().getFanOutBudget());
+            return Mono.just(response("fan-out", ids.stream().map(UserBatchService::tooLarge).toList()));
+        }
+        Duration spacing = fanOutSpacing();
+        return Flux.fromIterable(ids)
+                .index()
+                .concatMap(i -> i.getT1() == 0 ? Mono.just(i.getT2()) : Mono.delay(spacing).thenReturn(i.getT2()))
+                .flatMapSequential(id -> lookups.getById(id, apiVersion)
+                        .map(resp -> found(id, resp.getBody()))
+                        .switchIfEmpty(Mono.fromSupplier(() -> missing(id)))
+                        .onErrorResume(err -> Mono.just(failed(id, err))), concurrency)
+                .collectList()
+                .map(results -> response("fan-out", results));
+    }
+
+    private Map<String, Object> response(String mode, List<Map<String, Object>> results) {
+        registry.counter("dservice.batch.lookups", "mode", mode).increment();
+        results.forEach(r -> registry.counter("dservice.batch.lookup.ids", "status",
+                String.valueOf(r.get("status"))).increment());
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("mode", mode);
+        m.put("count", results.size());
+        m.put("results", results);
+        return m;
+    }
+
+    private static Map<String, Object> found(Long id, UserDTO user) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        m.put("status", 200);
+        m.put("user", user);
+        return m;
+    }
+
+    private static Map<String, Object> missing(Long id) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        m.put("status", 404);
+        m.put("error", "Not found");
+        return m;
+    }
+
+    private static Map<String, Object> tooLarge(Long id) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        m.put("status", 503);
+        m.put("error", "Bulk lookup unavailable and the batch is too large to fan out under the rate limit");
+        return m;
+    }
+
+    private static Map<String, Object> failed(Long id, Throwable err) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        putFailure(m, err);
+        return m;
+    }
+
+    /** status / error (/ correlationId) as the single call's error would have reached the client. */
+    static void putFailure(Map<String, Object> m, Throwable err) {
+        if (err instanceof ApiException api) {
+            m.put("status", api.getStatus() != null ? api.getStatus() : 502);
+            m.put("error", api.getMessage());
+            m.put("correlationId", api.getCorrelationId());
+        } else if (err instanceof RequestNotPermitted) {
+            m.put("status", 429);
+            m.put("error", "Client-side rate limit exceeded");
+        } else if (err instanceof CallNotPermittedException || err instanceof BulkheadFullException) {
+            m.put("status", 503);
+            m.put("error", err.getMessage());
+        } else {
+            m.put("status", 502);
+            m.put("error", err.toString());
+        }
+    }
+
+    /** 404/405/501 on the bulk route: the backend doesn't have it (as opposed to failing it). */
+    private static boolean bulkMissing(Throwable err) {
+        return err instanceof ApiException api && api.getStatus() != null
+                && (api.getStatus() == 404 || api.getStatus() == 405 || api.getStatus() == 501);
+    }
+}
@@ -0,0 +1,56 @@
+package reactive.httpwebclientservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import reactive.httpwebclientservice.DTOs.db.UserDbDTO;
+import reactive.httpwebclientservice.HttpClientInterface;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.utils.PassThrough;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Streams every user out of the backend page by page (GET /proxy/users:export, dservice.export.*).
+ *
+ * Pages are fetched with flatMapSequential at concurrency 1 + prefetch-pages: page N+1 is already on the wire
+ * while page N is being written, and order is kept. Demand comes from the caller: once the prefetched pages are
+ * held, nothing more is requested until the caller reads on, so memory is bounded by
+ * (1 + prefetch-pages) × page-size users whatever the total. A page shorter than page-size is the last one.
+ * Each page is decoded element by element, so the codec's in-memory limit applies per user, not per page; the
+ * PassThrough flag keeps the logging and coalescing filters from buffering the page body.
+ *
+ * Metrics: dservice.export.pages, dservice.export.users.
+ */
+@Service
+public class UserExportService {
+
+    private final HttpClientInterface users;
+    private final DserviceClientProperties props;
+    private final Counter pages;
+    private final Counter exported;
+
+    public UserExportService(HttpClientInterface users, DserviceClientProperties props, MeterRegistry registry) {
+        this.users = users;
+        this.props = props;
+        this.pages = registry.counter("dservice.export.pages");
+        this.exported = registry.counter("dservice.export.users");
+    }
+
+    /** @param pageSize null for the configured one; capped at max-page-size */
+    public Flux<UserDbDTO> exportAll(Integer pageSize) {
+        var cfg = props.getExport();
+        int size = Math.max(1, Math.min(pageSize == null ? cfg.getPageSize() : pageSize, cfg.getMaxPageSize()));
+        int concurrency = 1 + Math.max(0, cfg.getPrefetchPages());
+        return Flux.range(0, Integer.MAX_VALUE)
+                // prefetch = 1: ask for the next page index only when a page slot frees up
+                .flatMapSequential(page -> users.listUsers(page, size)
+                        .collectList()
+                        .contextWrite(PassThrough::mark), concurrency, 1)   // no filter buffers the whole page
+                .doOnNext(page -> pages.increment())
+                .takeUntil(page -> page.size() < size)
+                .flatMapIterable((List<UserDbDTO> page) -> page)
+                .doOnNext(user -> exported.increment());
+    }
+}
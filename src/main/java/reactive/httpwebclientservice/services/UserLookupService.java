@@ -0,0 +1,619 @@
+package reactive.httpwebclientservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactive.httpwebclientservice.DTOs.db.UserDTO;
+import reactive.httpwebclientservice.DTOs.db.UserDbDTO;
+import reactive.httpwebclientservice.HttpClientInterface;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+import reactive.httpwebclientservice.exceptions.ApiException;
+import reactive.httpwebclientservice.filters.NegativeCacheFilter;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * User lookups with an in-process response cache in front of HttpClientInterface (dservice.cache.users.*).
+ *
+ * Caffeine: W-TinyLFU admission, bounded by the approximate JSON size of the bodies (max-weight), so a burst of
+ * one-off ids can't push out the hot ones. Only 200s are kept; key = operation + id + X-API-Version + a digest of
+ * the caller's Authorization and Cookie (getWithData forwards them, so one caller's authorized view of a user is
+ * never served to another; anonymous calls share one entry).
+ * Freshness per entry: s-maxage, else max-age (minus Age), else Expires − Date, else default-ttl; capped at max-ttl.
+ * no-store / private / Vary on anything but X-API-Version, Authorization or Cookie (incl. *) are not cached;
+ * no-cache is kept but revalidated before every use.
+ *
+ * Once stale, an entry with ETag / Last-Modified is revalidated with If-None-Match / If-Modified-Since; a 304 renews
+ * it from the 304's headers and the already decoded body is served again — no body on the wire, no decoding.
+ * Within stale-while-revalidate it is served at once and refreshed in the background (one refresh per key).
+ * Within stale-if-error it is served when upstream is unavailable: circuit breaker open, bulkhead or rate limiter
+ * full, 5xx, connect/timeout. Both windows come from the Cache-Control extensions, else from the properties.
+ * A caller's own "Cache-Control: no-cache" skips fresh/stale serving and revalidates.
+ * Responses carry Age and X-Cache: HIT | MISS | STALE | REVALIDATED | STALE-IF-ERROR.
+ *
+ * Metrics: cache.gets{cache=users,result=hit|miss}, cache.evictions, cache.eviction.weight, cache.size, …,
+ * dservice.cache.revalidations{outcome=not-modified|modified|error}, dservice.cache.stale.served{reason},
+ * dservice.cache.revalidation.saved (bytes). Inspect / invalidate at /actuator/usercache.
+ *
+ * With dservice.cache.disk.enabled, every stored entry is also written to the {@link DiskResponseCache} (status,
+ * headers, freshness, JSON body) and an L1 miss looks there before going upstream: entries evicted by weight, or
+ * written before a restart, come back without a backend call, keeping their original age.
+ *
+ * 404s are not kept here but in {@link NegativeCacheFilter} (for every GET through the client); create and
+ * invalidate make it forget the id.
+ */
+@Service
+public class UserLookupService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserLookupService.class);
+
+    public static final String CACHE_HEADER = "X-Cache";
+    static final String API_VERSION = "X-API-Version";
+
+    private static final int ENTRY_OVERHEAD = 256;   // key, headers, bookkeeping
+    private static final String KEY_SEPARATOR = "|";
+    private static final Map<String, Class<?>> BODY_TYPES = Map.of(
+            "user", UserDTO.class,
+            "user-with-data", UserDbDTO.class);
+
+    /** credentials: digest of the forwarded Authorization + Cookie, null when the call carries neither. */
+    public record Key(String operation, Long id, String apiVersion, String credentials) {}
+
+    /** Nanos after storing: fresh until freshNanos, then servable stale for the two windows; evicted at retainNanos. */
+    public record Freshness(long freshNanos, long staleWhileRevalidateNanos, long staleIfErrorNanos, long retainNanos) {
+        static final Freshness NONE = new Freshness(0, 0, 0, 0);
+    }
+
+    /** A cached 200: body as decoded (a 304 reuses it as is), headers incl. validators. */
+    public record Entry(HttpStatusCode status, HttpHeaders headers, Object body, int weight,
+                        long storedAtNanos, Freshness freshness) {
+        long ageSeconds() {
+            return Duration.ofNanos(System.nanoTime() - storedAtNanos).toSeconds();
+        }
+
+        boolean isFresh(long now) {
+            return now - storedAtNanos < freshness.freshNanos();
+        }
+
+        boolean inStaleWhileRevalidate(long now) {
+            return now - storedAtNanos < freshness.freshNanos() + freshness.staleWhileRevalidateNanos();
+        }
+
+        boolean inStaleIfError(long now) {
+            return now - storedAtNanos < freshness.freshNanos() + freshness.staleIfErrorNanos();
+        }
+
+        /** Until eviction; less than retainNanos for entries promoted from the disk tier. */
+        long remainingNanos() {
+            return Math.max(0, freshness.retainNanos() - (System.nanoTime() - storedAtNanos));
+        }
+
+        boolean hasValidators() {
+            return headers.getETag() != null || headers.getFirst(HttpHeaders.LAST_MODIFIED) != null;
+        }
+
+        Map<String, String> conditionalHeaders() {
+            Map<String, String> h = new LinkedHashMap<>();
+            if (headers.getETag() != null) h.put(HttpHeaders.IF_NONE_MATCH, headers.getETag());
+            if (headers.getFirst(HttpHeaders.LAST_MODIFIED) != null) {
+                h.put(HttpHeaders.IF_MODIFIED_SINCE, headers.getFirst(HttpHeaders.LAST_MODIFIED));
+            }
+            return h;
+        }
+    }
+
+    private final HttpClientInterface users;
+    private final DserviceClientProperties props;
+    private final ObjectMapper mapper;
+    private final Cache<Key, Entry> cache;
+    private final MeterRegistry registry;
+    private final Counter savedBytes;
+    private final Set<Key> refreshing = ConcurrentHashMap.newKeySet();
+    private final DiskResponseCache disk;
+    private final NegativeCacheFilter notFound;
+    private final CreateUserBatcher creates;
+
+    public UserLookupService(HttpClientInterface users, DserviceClientProperties props,
+                             ObjectMapper mapper, MeterRegistry registry, DiskResponseCache disk,
+                             NegativeCacheFilter notFound, CreateUserBatcher creates) {
+        this.users = users;
+        this.disk = disk;
+        this.notFound = notFound;
+        this.creates = creates;
+        this.props = props;
+        this.mapper = mapper;
+        this.registry = registry;
+        this.savedBytes = Counter.builder("dservice.cache.revalidation.saved")
+                .baseUnit("bytes")
+                .description("Approximate body bytes not transferred/decoded thanks to 304 Not Modified")
+                .tag("cache", "users")
+                .register(registry);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(props.getCache().getUsers().getMaxWeight().toBytes())   // restart to change
+                .weigher((Key k, Entry e) -> e.weight())
+                .expireAfter(new Expiry<Key, Entry>() {
+                    @Override
+                    public long expireAfterCreate(Key key, Entry entry, long currentTime) {
+                        return entry.remainingNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.remainingNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "users");
+    }
+
+    public Mono<ResponseEntity<UserDTO>> getById(Long id, String apiVersion) {
+        return cached(new Key("user", id, apiVersion, null), false, conditional -> {
+            if (conditional.isEmpty()) {
+                return users.getById(id, apiVersion);
+            }
+            Map<String, String> headers = new LinkedHashMap<>(conditional);
+            if (apiVersion != null) headers.put(API_VERSION, apiVersion);
+            return users.getByIdWithHints(id, headers);   // same endpoint, arbitrary headers
+        });
+    }
+
+    /** The caller's headers are forwarded as before; X-API-Version and the credentials among them are part of the key. */
+    public Mono<ResponseEntity<UserDbDTO>> getWithData(Long id, Map<String, String> headers) {
+        String apiVersion = header(headers, API_VERSION);
+        String cacheControl = header(headers, HttpHeaders.CACHE_CONTROL);
+        boolean refresh = cacheControl != null && cacheControl.toLowerCase().contains("no-cache");
+        return cached(new Key("user-with-data", id, apiVersion, credentials(headers)), refresh,
+                conditional -> users.getWithData(id, withConditional(headers, conditional)));
+    }
+
+    /**
+     * Creates pass straight through (or through the micro-batcher, dservice.batch.create.enabled), but drop
+     * anything cached under the new id — a remembered 404 first.
+     */
+    public Mono<ResponseEntity<UserDbDTO>> create(UserDbDTO body) {
+        return (creates.isEnabled() ? creates.submit(body) : users.create(body))
+                .doOnNext(resp -> {
+                    if (resp.getBody() != null && resp.getBody().getId() != null) {
+                        notFound.forget(resp.getBody().getId());   // before the caller can GET it
+                        offload(() -> invalidate(resp.getBody().getId()));
+                    }
+                });
+    }
+
+    /** Drops every entry (all operations / versions, both tiers) for the id; blocking. Returns how many went. */
+    public int invalidate(Long id) {
+        notFound.forget(id);
+        List<Key> keys = cache.asMap().keySet().stream().filter(k -> k.id().equals(id)).toList();
+        cache.invalidateAll(keys);
+        String idPart = KEY_SEPARATOR + id + KEY_SEPARATOR;
+        return Math.max(keys.size(), disk.removeIf(k -> k.contains(idPart)));
+    }
+
+    /** Blocking (clears the disk tier too). */
+    public long invalidateAll() {
+        long size = cache.estimatedSize();
+        cache.invalidateAll();
+        disk.clear();
+        return size;
+    }
+
+    /** Snapshot for /actuator/usercache: stats + entries, most recently stored first. */
+    public Map<String, Object> describe() {
+        var stats = cache.stats();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", props.getCache().getUsers().isEnabled());
+        m.put("size", cache.estimatedSize());
+        m.put("weightBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(-1)).orElse(-1L));
+        m.put("maxWeightBytes", props.getCache().getUsers().getMaxWeight().toBytes());
+        m.put("hits", stats.hitCount());
+        m.put("misses", stats.missCount());
+        m.put("hitRate", stats.hitRate());
+        m.put("evictions", stats.evictionCount());
+        m.put("disk", disk.describe());
+        m.put("notFound", notFound.describe());
+        m.put("entries", cache.asMap().entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Key, Entry> e) -> e.getValue().storedAtNanos()).reversed())
+                .map(e -> {
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("operation", e.getKey().operation());
+                    entry.put("id", e.getKey().id());
+                    entry.put("apiVersion", e.getKey().apiVersion());
+                    entry.put("credentialed", e.getKey().credentials() != null);
+                    entry.put("ageSeconds", e.getValue().ageSeconds());
+                    entry.put("freshSeconds", Duration.ofNanos(e.getValue().freshness().freshNanos()).toSeconds());
+                    entry.put("stale", !e.getValue().isFresh(System.nanoTime()));
+                    entry.put("etag", e.getValue().headers().getETag());
+                    entry.put("weightBytes", e.getValue().weight());
+                    return entry;
+                })
+                .toList());
+        return m;
+    }
+
+    private <T> Mono<ResponseEntity<T>> cached(Key key, boolean refresh,
+                                               Function<Map<String, String>, Mono<ResponseEntity<T>>> upstream) {
+        if (!props.getCache().getUsers().isEnabled()) {
+            return upstream.apply(Map.of());
+        }
+        return lookup(key)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(found -> serve(key, found.orElse(null), refresh, upstream));
+    }
+
+    private <T> Mono<ResponseEntity<T>> serve(Key key, Entry entry, boolean refresh,
+                                              Function<Map<String, String>, Mono<ResponseEntity<T>>> upstream) {
+        return Mono.defer(() -> {
+            long now = System.nanoTime();
+            if (entry != null && !refresh) {
+                if (entry.isFresh(now)) {
+                    return Mono.just(respond(entry, "HIT"));
+                }
+                if (entry.inStaleWhileRevalidate(now)) {
+                    revalidateInBackground(key, entry, upstream);
+                    staleServed("while-revalidate");
+                    return Mono.just(respond(entry, "STALE"));
+                }
+            }
+            return fetch(key, entry != null && entry.hasValidators() ? entry : null, upstream)
+                    .onErrorResume(err -> entry != null && entry.inStaleIfError(System.nanoTime())
+                                    && upstreamUnavailable(err),
+                            err -> {
+                                log.debug("Serving stale {} ({}): {}", key, "stale-if-error", err.toString());
+                                staleServed("if-error");
+                                return Mono.just(UserLookupService.<T>respond(entry, "STALE-IF-ERROR"));
+                            });
+        });
+    }
+
+    /** Plain GET, or a conditional one when there is a previous entry with validators; 304 → that entry, renewed. */
+    private <T> Mono<ResponseEntity<T>> fetch(Key key, Entry previous,
+                                              Function<Map<String, String>, Mono<ResponseEntity<T>>> upstream) {
+        return upstream.apply(previous == null ? Map.of() : previous.conditionalHeaders())
+                .doOnError(err -> {
+                    if (previous != null) revalidated("error");
+                })
+                .map(resp -> {
+                    if (previous != null && resp.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                        revalidated("not-modified");
+                        savedBytes.increment(previous.weight() - ENTRY_OVERHEAD);
+                        return UserLookupService.<T>respond(renew(key, previous, resp.getHeaders()), "REVALIDATED");
+                    }
+                    if (previous != null) revalidated("modified");
+                    store(key, resp);
+                    return ResponseEntity.status(resp.getStatusCode())
+                            .headers(resp.getHeaders())
+                            .header(CACHE_HEADER, "MISS")
+                            .body(resp.getBody());
+                });
+    }
+
+    /** One refresh per key at a time; whoever asks meanwhile keeps getting the stale entry. */
+    private <T> void revalidateInBackground(Key key, Entry stale,
+                                            Function<Map<String, String>, Mono<ResponseEntity<T>>> upstream) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        fetch(key, stale.hasValidators() ? stale : null, upstream)
+                .doFinally(s -> refreshing.remove(key))
+                .subscribe(ok -> {}, err -> log.debug("Background revalidation of {} failed: {}", key, err.toString()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ResponseEntity<T> respond(Entry entry, String cacheStatus) {
+        return ResponseEntity.status(entry.status())
+                .headers(h -> {
+                    h.addAll(entry.headers());
+                    h.set(HttpHeaders.AGE, Long.toString(entry.ageSeconds()));
+                    h.set(CACHE_HEADER, cacheStatus);
+                })
+                .body((T) entry.body());
+    }
+
+    private void store(Key key, ResponseEntity<?> resp) {
+        if (resp.getStatusCode() != HttpStatus.OK || resp.getBody() == null) {
+            return;
+        }
+        Freshness freshness = freshness(resp.getHeaders());
+        if (freshness == null) {
+            drop(key);
+            return;
+        }
+        put(key, new Entry(resp.getStatusCode(), HttpHeaders.readOnlyHttpHeaders(resp.getHeaders()),
+                resp.getBody(), weigh(resp.getBody()), System.nanoTime(), freshness));
+    }
+
+    /** The 304's headers (new Date, ETag, Cache-Control, …) replace the stored ones; the body is kept as decoded. */
+    private Entry renew(Key key, Entry previous, HttpHeaders notModified) {
+        HttpHeaders merged = new HttpHeaders();
+        merged.addAll(previous.headers());
+        notModified.forEach((name, values) -> {
+            if (!name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH) && !name.equalsIgnoreCase(HttpHeaders.TRANSFER_ENCODING)) {
+                merged.put(name, values);
+            }
+        });
+        Freshness freshness = freshness(merged);
+        Entry renewed = new Entry(previous.status(), HttpHeaders.readOnlyHttpHeaders(merged), previous.body(),
+                previous.weight(), System.nanoTime(), freshness != null ? freshness : Freshness.NONE);
+        if (freshness == null) {
+            drop(key);
+        } else {
+            put(key, renewed);
+        }
+        return renewed;
+    }
+
+    /**
+     * How long a response is fresh, may be served stale, and is kept at all; null = don't store.
+     * no-cache is stored (with validators) but always revalidated first.
+     */
+    Freshness freshness(HttpHeaders headers) {
+        var cfg = props.getCache().getUsers();
+        // the key holds X-API-Version and the credentials only, while getWithData forwards every caller header: a
+        // response that varies on anything else (Accept, Accept-Language, …, or *) must not be shared
+        if (headers.getVary().stream().anyMatch(name -> !name.equalsIgnoreCase(API_VERSION)
+                && !name.equalsIgnoreCase(HttpHeaders.AUTHORIZATION) && !name.equalsIgnoreCase(HttpHeaders.COOKIE))) {
+            return null;
+        }
+        Long maxAge = null;
+        Long sMaxAge = null;
+        Long staleWhileRevalidate = null;
+        Long staleIfError = null;
+        boolean noCache = false;
+        for (String directive : headers.getOrEmpty(HttpHeaders.CACHE_CONTROL).stream()
+                .flatMap(v -> List.of(v.split(",")).stream())
+                .map(d -> d.trim().toLowerCase())
+                .toList()) {
+            if (directive.equals("no-store") || directive.equals("private")) {
+                return null;
+            }
+            if (directive.equals("no-cache")) noCache = true;
+            else if (directive.startsWith("s-maxage=")) sMaxAge = seconds(directive.substring(9));
+            else if (directive.startsWith("max-age=")) maxAge = seconds(directive.substring(8));
+            else if (directive.startsWith("stale-while-revalidate=")) staleWhileRevalidate = seconds(directive.substring(23));
+            else if (directive.startsWith("stale-if-error=")) staleIfError = seconds(directive.substring(15));
+        }
+        Duration fresh;
+        if (noCache) {
+            fresh = Duration.ZERO;
+        } else if (sMaxAge != null || maxAge != null) {
+            long age = headers.getFirst(HttpHeaders.AGE) != null ? seconds(headers.getFirst(HttpHeaders.AGE)) : 0;
+            fresh = Duration.ofSeconds((sMaxAge != null ? sMaxAge : maxAge) - age);
+        } else if (headers.getExpires() > 0) {
+            long now = headers.getDate() > 0 ? headers.getDate() : System.currentTimeMillis();
+            fresh = Duration.ofMillis(headers.getExpires() - now);
+        } else {
+            fresh = cfg.getDefaultTtl();
+        }
+        if (fresh.compareTo(cfg.getMaxTtl()) > 0) {
+            fresh = cfg.getMaxTtl();
+        }
+        if (fresh.isNegative()) {
+            fresh = Duration.ZERO;
+        }
+        Duration swr = noCache ? Duration.ZERO
+                : staleWhileRevalidate != null ? Duration.ofSeconds(staleWhileRevalidate) : cfg.getStaleWhileRevalidate();
+        Duration sie = staleIfError != null ? Duration.ofSeconds(staleIfError) : cfg.getStaleIfError();
+        boolean validators = headers.getETag() != null || headers.getLastModified() > 0;
+        Duration keep = validators ? cfg.getKeepForRevalidation() : Duration.ZERO;
+        Duration retain = fresh.plus(max(swr, max(sie, keep)));
+        if (retain.isZero() || retain.isNegative()) {
+            return null;
+        }
+        return new Freshness(fresh.toNanos(), swr.toNanos(), sie.toNanos(), retain.toNanos());
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /** Circuit breaker open, bulkhead/limiter full, 5xx or transport failure: the cases stale-if-error covers. */
+    private static boolean upstreamUnavailable(Throwable err) {
+        return err instanceof CallNotPermittedException
+                || err instanceof BulkheadFullException
+                || err instanceof RequestNotPermitted
+                || (err instanceof ApiException api && (api.getStatus() == null || api.getStatus() >= 500));
+    }
+
+    private void revalidated(String outcome) {
+        registry.counter("dservice.cache.revalidations", "cache", "users", "outcome", outcome).increment();
+    }
+
+    private void staleServed(String reason) {
+        registry.counter("dservice.cache.stale.served", "cache", "users", "reason", reason).increment();
+    }
+
+    /** L1, else (when enabled) the disk tier off the event loop, promoting what it finds into L1. */
+    private Mono<Entry> lookup(Key key) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null || !disk.isEnabled()) {
+            return Mono.justOrEmpty(entry);
+        }
+        return Mono.fromCallable(() -> fromDisk(key))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(e -> cache.put(key, e));
+    }
+
+    private void put(Key key, Entry entry) {
+        cache.put(key, entry);
+        if (disk.isEnabled()) {
+            long expiresAt = System.currentTimeMillis() + Duration.ofNanos(entry.remainingNanos()).toMillis();
+            offload(() -> disk.put(diskKey(key), toBytes(entry), expiresAt));
+        }
+    }
+
+    private void drop(Key key) {
+        cache.invalidate(key);
+        if (disk.isEnabled()) {
+            offload(() -> disk.remove(diskKey(key)));
+        }
+    }
+
+    private static void offload(Runnable blocking) {
+        Mono.fromRunnable(blocking)
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, err -> log.warn("User cache maintenance failed: {}", err.toString()));
+    }
+
+    private static String diskKey(Key key) {
+        return key.operation() + KEY_SEPARATOR + key.id() + KEY_SEPARATOR
+                + (key.apiVersion() == null ? "" : key.apiVersion()) + KEY_SEPARATOR
+                + (key.credentials() == null ? "" : key.credentials());
+    }
+
+    /** SHA-256 of Authorization + Cookie (only the digest is kept, in memory and on disk); null when neither is sent. */
+    static String credentials(Map<String, String> headers) {
+        String authorization = header(headers, HttpHeaders.AUTHORIZATION);
+        String cookie = header(headers, HttpHeaders.COOKIE);
+        if (authorization == null && cookie == null) {
+            return null;
+        }
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(String.valueOf(authorization).getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            sha.update(String.valueOf(cookie).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** status, storedAt (wall clock), freshness, headers, JSON body. */
+    private byte[] toBytes(Entry entry) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.weight());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(entry.status().value());
+            out.writeLong(System.currentTimeMillis() - Duration.ofNanos(System.nanoTime() - entry.storedAtNanos()).toMillis());
+            Freshness f = entry.freshness();
+            out.writeLong(f.freshNanos());
+            out.writeLong(f.staleWhileRevalidateNanos());
+            out.writeLong(f.staleIfErrorNanos());
+            out.writeLong(f.retainNanos());
+            out.writeInt(entry.headers().size());
+            for (Map.Entry<String, List<String>> h : entry.headers().entrySet()) {
+                out.writeUTF(h.getKey());
+                out.writeInt(h.getValue().size());
+                for (String v : h.getValue()) out.writeUTF(v);
+            }
+            byte[] body = mapper.writeValueAsBytes(entry.body());
+            out.writeInt(body.length);
+            out.write(body);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** null when not on disk, unreadable, or past its retention. */
+    private Entry fromDisk(Key key) {
+        byte[] value = disk.get(diskKey(key));
+        Class<?> type = BODY_TYPES.get(key.operation());
+        if (value == null || type == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+            HttpStatusCode status = HttpStatusCode.valueOf(in.readInt());
+            long ageNanos = Duration.ofMillis(System.currentTimeMillis() - in.readLong()).toNanos();
+            Freshness freshness = new Freshness(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+            HttpHeaders headers = new HttpHeaders();
+            int headerCount = in.readInt();
+            for (int i = 0; i < headerCount; i++) {
+                String name = in.readUTF();
+                int values = in.readInt();
+                for (int v = 0; v < values; v++) headers.add(name, in.readUTF());
+            }
+            byte[] body = in.readNBytes(in.readInt());
+            Entry entry = new Entry(status, HttpHeaders.readOnlyHttpHeaders(headers), mapper.readValue(body, type),
+                    ENTRY_OVERHEAD + body.length, System.nanoTime() - ageNanos, freshness);
+            return entry.remainingNanos() > 0 ? entry : null;
+        } catch (IOException e) {
+            log.debug("Unreadable disk cache entry for {}: {}", key, e.toString());
+            return null;
+        }
+    }
+
+    private int weigh(Object body) {
+        try {
+            return ENTRY_OVERHEAD + mapper.writeValueAsBytes(body).length;
+        } catch (Exception e) {
+            log.debug("Could not weigh {}: {}", body.getClass().getSimpleName(), e.toString());
+            return ENTRY_OVERHEAD + 1024;
+        }
+    }
+
+    private static long seconds(String value) {
+        try {
+            return Long.parseLong(value.trim().replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** The caller's headers with our validators instead of any conditional headers of its own. */
+    private static Map<String, String> withConditional(Map<String, String> headers, Map<String, String> conditional) {
+        if (conditional.isEmpty()) {
+            return headers;
+        }
+        Map<String, String> merged = new LinkedHashMap<>();
+        headers.forEach((k, v) -> {
+            if (!k.equalsIgnoreCase(HttpHeaders.IF_NONE_MATCH) && !k.equalsIgnoreCase(HttpHeaders.IF_MODIFIED_SINCE)) {
+                merged.put(k, v);
+            }
+        });
+        merged.putAll(conditional);
+        return merged;
+    }
+
+    private static String header(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        return headers.entrySet().stream()
+                .filter(e -> e.getKey().equalsIgnoreCase(name))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+}
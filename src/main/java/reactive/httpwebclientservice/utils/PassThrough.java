@@ -0,0 +1,23 @@
+package reactive.httpwebclientservice.utils;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Reactor-context flag for calls whose response body is streamed rather than read whole
+ * (HttpClientInterface *Raw variants, export pages): filters must not buffer or copy the body.
+ */
+public final class PassThrough {
+    private PassThrough() {}
+
+    public static final String CTX_KEY = "passThrough";
+
+    /** Use with contextWrite on the call's Mono. */
+    public static Context mark(Context ctx) {
+        return ctx.put(CTX_KEY, Boolean.TRUE);
+    }
+
+    public static boolean isOn(ContextView ctx) {
+        return ctx.getOrDefault(CTX_KEY, Boolean.FALSE);
+    }
+}
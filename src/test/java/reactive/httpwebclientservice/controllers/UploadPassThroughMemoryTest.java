@@ -0,0 +1,108 @@
+package reactive.httpwebclientservice.controllers;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * /proxy/upload-pass-through with a body three times the test JVM's heap (build.gradle: maxHeapSize 1g), sent to a
+ * stub backend that only counts bytes. Nothing may accumulate: the whole body arrives without an OutOfMemoryError,
+ * and pooled direct memory stays within what the allocator's arenas hold anyway — not a function of the size.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UploadPassThroughMemoryTest {
+
+    private static final long BODY = 3L * 1024 * 1024 * 1024;
+    private static final int CHUNK = 64 * 1024;
+
+    private static final AtomicLong received = new AtomicLong();
+    private static DisposableServer backend;
+
+    @LocalServerPort
+    int port;
+
+    @BeforeAll
+    static void startBackend() {
+        backend = HttpServer.create()
+                .port(0)
+                .route(r -> r
+                        .post("/api/v1/upload-large-files", (req, res) -> req.receive()
+                                .doOnNext(b -> received.addAndGet(b.readableBytes()))
+                                .then(Mono.defer(() -> Mono.from(res.status(200).send()))))
+                        .post("/api/v1/upload-large-files/{uploadId}/checksum", (req, res) -> req.receive()
+                                .then(Mono.defer(() -> Mono.from(res.status(200).send())))))
+                .bindNow();
+    }
+
+    @AfterAll
+    static void stopBackend() {
+        backend.disposeNow();
+    }
+
+    // backend-service resolves to the stub through the simple discovery client instead of Eureka
+    @DynamicPropertySource
+    static void backendInstance(DynamicPropertyRegistry registry) {
+        registry.add("eureka.client.enabled", () -> "false");
+        registry.add("spring.cloud.discovery.client.simple.instances.backend-service[0].uri",
+                () -> "http://localhost:" + backend.port());
+    }
+
+    @Test
+    void multiGigabyteBodyIsStreamedNotBuffered() {
+        // the sender's chunks are views of one unpooled buffer: the test adds nothing to the pool it measures
+        ByteBuf zeros = Unpooled.unreleasableBuffer(Unpooled.directBuffer(CHUNK).writeZero(CHUNK));
+        NettyDataBufferFactory views = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT);
+        Flux<DataBuffer> body = Flux.range(0, (int) (BODY / CHUNK))
+                .map(i -> (DataBuffer) views.wrap(zeros.duplicate()));
+
+        PooledByteBufAllocatorMetric pool = PooledByteBufAllocator.DEFAULT.metric();
+        AtomicLong directMax = new AtomicLong();
+        Disposable sampler = Flux.interval(Duration.ofMillis(20))
+                .subscribe(t -> directMax.accumulateAndGet(pool.usedDirectMemory(), Math::max));
+
+        ResponseEntity<Void> resp;
+        try {
+            resp = WebClient.create("http://localhost:" + port)
+                    .post()
+                    .uri("/proxy/upload-pass-through")
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .contentLength(BODY)
+                    .body(BodyInserters.fromDataBuffers(body))
+                    .retrieve()
+                    .toBodilessEntity()
+                    .block(Duration.ofMinutes(5));
+        } finally {
+            sampler.dispose();
+        }
+
+        assertThat(resp.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(received.get()).isEqualTo(BODY);
+        long arenas = (long) (pool.numDirectArenas() + 1) * pool.chunkSize();
+        assertThat(directMax.get()).as("peak pooled direct memory").isLessThan(arenas + 64L * 1024 * 1024);
+    }
+}
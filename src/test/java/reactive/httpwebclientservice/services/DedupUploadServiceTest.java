@@ -0,0 +1,83 @@
+package reactive.httpwebclientservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DedupUploadServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void chunksTileTheFileWithinBounds() throws IOException {
+        byte[] data = random(3 * 1024 * 1024 + 123, 1);      // spans several read blocks
+        DedupUploadService.FileDigest d = DedupUploadService.chunk(write("a", data), opts());
+
+        assertThat(d.size()).isEqualTo(data.length);
+        long next = 0;
+        for (int i = 0; i < d.chunks().size(); i++) {
+            DedupUploadService.Chunk c = d.chunks().get(i);
+            assertThat(c.offset()).isEqualTo(next);
+            assertThat(c.length()).isLessThanOrEqualTo(64 * 1024);
+            if (i < d.chunks().size() - 1) {
+                assertThat(c.length()).isGreaterThanOrEqualTo(4 * 1024);
+            }
+            next += c.length();
+        }
+        assertThat(next).isEqualTo(data.length);
+    }
+
+    @Test
+    void insertionOnlyChangesNearbyChunks() throws IOException {
+        byte[] data = random(2 * 1024 * 1024, 2);
+        byte[] shifted = new byte[data.length + 7];
+        System.arraycopy(data, 0, shifted, 0, 1000);
+        System.arraycopy(data, 1000, shifted, 1007, data.length - 1000);     // 7 bytes inserted near the start
+
+        DedupUploadService.FileDigest a = DedupUploadService.chunk(write("a", data), opts());
+        DedupUploadService.FileDigest b = DedupUploadService.chunk(write("b", shifted), opts());
+
+        assertThat(a.sha256()).isNotEqualTo(b.sha256());
+        Set<String> before = new HashSet<>();
+        a.chunks().forEach(c -> before.add(c.sha256()));
+        long changed = b.chunks().stream().filter(c -> !before.contains(c.sha256())).count();
+        assertThat(changed).isLessThanOrEqualTo(2);         // boundaries resync after the edit
+    }
+
+    @Test
+    void emptyFileIsOneEmptyChunk() throws IOException {
+        DedupUploadService.FileDigest d = DedupUploadService.chunk(write("empty", new byte[0]), opts());
+        assertThat(d.size()).isZero();
+        assertThat(d.chunks()).hasSize(1);
+        assertThat(d.chunks().get(0).length()).isZero();
+    }
+
+    private static DserviceClientProperties.Dedup opts() {
+        DserviceClientProperties.Dedup opts = new DserviceClientProperties.Dedup();
+        opts.setMinChunk(DataSize.ofKilobytes(4));
+        opts.setAvgChunk(DataSize.ofKilobytes(16));
+        opts.setMaxChunk(DataSize.ofKilobytes(64));
+        return opts;
+    }
+
+    private Path write(String name, byte[] data) throws IOException {
+        return Files.write(dir.resolve(name), data);
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
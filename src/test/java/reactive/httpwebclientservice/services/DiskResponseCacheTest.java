@@ -0,0 +1,159 @@
+package reactive.httpwebclientservice.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactive.httpwebclientservice.config.DserviceClientProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiskResponseCacheTest {
+
+    // 20 header + 2 key + 4 valueLen + 150 value + 4 crc: five records fill a 1 KiB segment, the sixth rolls
+    private static final int SEGMENT = 1024;
+    private static final int RECORD = 180;
+    private static final int TOMBSTONE = 30;
+
+    @TempDir
+    Path dir;
+
+    private final List<DiskResponseCache> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        opened.forEach(DiskResponseCache::close);
+    }
+
+    @Test
+    void entriesSurviveRestart() throws IOException {
+        DiskResponseCache cache = open();
+        cache.put("k0", value(0), later());
+        cache.put("k1", value(1), later());
+        cache.put("k0", value(2), later());          // newer record for the same key wins on recovery
+
+        DiskResponseCache reopened = restart(cache);
+        assertThat(reopened.get("k0")).isEqualTo(value(2));
+        assertThat(reopened.get("k1")).isEqualTo(value(1));
+        assertThat(reopened.describe()).containsEntry("entries", 2);
+    }
+
+    @Test
+    void tornTailRecordIsDroppedAndOverwritten() throws IOException {
+        DiskResponseCache cache = open();
+        cache.put("k0", value(0), later());
+        cache.put("k1", value(1), later());
+        close(cache);
+        corrupt(dir.resolve("segment-1.dat"), RECORD + RECORD / 2);     // inside k1's record
+
+        DiskResponseCache reopened = open();
+        assertThat(reopened.get("k0")).isEqualTo(value(0));
+        assertThat(reopened.get("k1")).isNull();
+        assertThat(reopened.describe()).containsEntry("diskBytes", (long) RECORD);
+
+        reopened.put("k2", value(2), later());       // appended where the torn record was
+        DiskResponseCache again = restart(reopened);
+        assertThat(again.get("k0")).isEqualTo(value(0));
+        assertThat(again.get("k2")).isEqualTo(value(2));
+    }
+
+    @Test
+    void tombstoneInNewerSegmentSurvivesRestart() throws IOException {
+        DiskResponseCache cache = open();
+        for (int i = 0; i < 5; i++) {
+            cache.put("k" + i, value(i), later());    // fills segment 1
+        }
+        cache.put("f0", value(5), later());          // rolls to segment 2
+        cache.remove("k0");                           // tombstone lands in segment 2, the record stays in 1
+        assertThat(cache.get("k0")).isNull();
+
+        DiskResponseCache reopened = restart(cache);
+        assertThat(reopened.describe()).containsEntry("segments", 2);
+        assertThat(reopened.get("k0")).isNull();
+        assertThat(reopened.get("k1")).isEqualTo(value(1));
+        assertThat(reopened.get("f0")).isEqualTo(value(5));
+    }
+
+    @Test
+    void compactionThatRollsKeepsEveryLiveRecord() throws IOException {
+        DiskResponseCache cache = open();
+        for (int i = 0; i < 5; i++) cache.put("k" + i, value(i), later());        // segment 1, full
+        for (int i = 0; i < 5; i++) cache.put("f" + i, value(10 + i), later());   // segment 2, full
+        for (int i = 0; i < 4; i++) cache.put("g" + i, value(20 + i), later());   // segment 3, 720 bytes
+        cache.remove("k0");
+        cache.remove("k1");                           // segment 3 at 780; segment 1 is 3/5 live, below 0.7
+        assertThat(cache.describe()).containsEntry("segments", 3);
+
+        // moving k2 fits segment 3 (960), k3 rolls into segment 4 while segment 1 is still being walked, and the
+        // segment count is momentarily above max-size: k4, still behind the roll, must keep its index entry
+        cache.compact();
+
+        assertThat(cache.describe()).containsEntry("segments", 3);
+        assertThat(cache.get("k0")).isNull();
+        assertThat(cache.get("k1")).isNull();
+        for (int i = 2; i < 5; i++) assertThat(cache.get("k" + i)).as("k" + i).isEqualTo(value(i));
+        for (int i = 0; i < 5; i++) assertThat(cache.get("f" + i)).as("f" + i).isEqualTo(value(10 + i));
+        for (int i = 0; i < 4; i++) assertThat(cache.get("g" + i)).as("g" + i).isEqualTo(value(20 + i));
+        assertThat(cache.describe()).containsEntry("diskBytes",
+                (long) (5 * RECORD) + (4 * RECORD + 2 * TOMBSTONE + RECORD) + (2 * RECORD));
+
+        DiskResponseCache reopened = restart(cache);
+        for (int i = 2; i < 5; i++) assertThat(reopened.get("k" + i)).as("k" + i).isEqualTo(value(i));
+        assertThat(reopened.get("k0")).isNull();
+    }
+
+    private DiskResponseCache open() throws IOException {
+        DserviceClientProperties props = new DserviceClientProperties();
+        DserviceClientProperties.DiskCache disk = props.getCache().getDisk();
+        disk.setEnabled(true);
+        disk.setDir(dir);
+        disk.setSegmentSize(DataSize.ofBytes(SEGMENT));
+        disk.setMaxSize(DataSize.ofBytes(3 * SEGMENT));
+        disk.setIndexCapacity(16);
+        disk.setCompactionInterval(Duration.ofHours(1));   // compact() is driven by the tests
+        disk.setCompactionThreshold(0.7);
+        DiskResponseCache cache = new DiskResponseCache(props, new SimpleMeterRegistry());
+        opened.add(cache);
+        return cache;
+    }
+
+    private DiskResponseCache restart(DiskResponseCache cache) throws IOException {
+        close(cache);
+        return open();
+    }
+
+    private void close(DiskResponseCache cache) {
+        opened.remove(cache);
+        cache.close();
+    }
+
+    private static byte[] value(int seed) {
+        byte[] v = new byte[150];
+        Arrays.fill(v, (byte) seed);
+        return v;
+    }
+
+    private static long later() {
+        return System.currentTimeMillis() + Duration.ofHours(1).toMillis();
+    }
+
+    private static void corrupt(Path file, int offset) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, offset);
+            b.put(0, (byte) (b.get(0) ^ 0xff));
+            ch.write(b.rewind(), offset);
+        }
+    }
+}